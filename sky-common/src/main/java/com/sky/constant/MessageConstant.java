@@ -24,6 +24,11 @@ public class MessageConstant {
     public static final String DISH_BE_RELATED_BY_SETMEAL = "当前菜品关联了套餐,不能删除";
     public static final String ORDER_STATUS_ERROR = "订单状态错误";
     public static final String ORDER_NOT_FOUND = "订单不存在";
+    public static final String ORDER_BUSY = "下单人数过多，请稍后再试";
+    public static final String ORDER_ITEM_UNAVAILABLE = "购物车中有已停售的商品，请重新选择";
+    public static final String CART_ITEM_UNAVAILABLE = "商品不存在或已停售";
+    public static final String REPORT_DATE_RANGE_ERROR = "开始日期和结束日期不能为空，且开始日期不能晚于结束日期";
+    public static final String REPORT_REBUILD_RANGE_TOO_LARGE = "一次最多重算31天的数据";
 
 
 }
@@ -0,0 +1,28 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.cart")
+@Data
+public class CartProperties {
+
+    /**
+     * redis中购物车的过期时间(秒)，每次修改后重新计时，过期后从数据库重新加载
+     */
+    private long expireSeconds = 7 * 24 * 3600;
+
+    /**
+     * 每次最多合并写入数据库的用户数
+     */
+    private int flushBatchSize = 100;
+
+    /**
+     * 写入数据库时每个用户购物车的锁定时间(秒)，避免多个节点同时写同一个用户；
+     * 领取后超过该时间仍未写入完成的用户会被放回待写入集合
+     */
+    private long flushLockSeconds = 30;
+
+}
@@ -23,4 +23,14 @@ public class JwtProperties {
     private long userTtl;
     private String userTokenName;
 
+    /**
+     * 本地缓存已校验令牌的最大数量
+     */
+    private long verifiedCacheMaximumSize = 10000;
+
+    /**
+     * 已校验令牌在本地缓存的最长时间(秒)，作为跨节点吊销消息丢失时的兜底
+     */
+    private long verifiedCacheExpireSeconds = 600;
+
 }
@@ -0,0 +1,42 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.menu-cache")
+@Data
+public class MenuCacheProperties {
+
+    /**
+     * 本地缓存(一级缓存)最大条目数
+     */
+    private long localMaximumSize = 1000;
+
+    /**
+     * 本地缓存写入后的过期时间(秒)，作为跨节点失效消息丢失时的兜底
+     */
+    private long localExpireSeconds = 60;
+
+    /**
+     * redis中菜单数据的基础过期时间(秒)
+     */
+    private long redisExpireSeconds = 1800;
+
+    /**
+     * 在基础过期时间上追加的随机时长上限(秒)，避免大量key同时过期
+     */
+    private long redisExpireJitterSeconds = 300;
+
+    /**
+     * 空结果的缓存时间(秒)，防止空分类反复查询数据库
+     */
+    private long emptyExpireSeconds = 60;
+
+    /**
+     * 加载数据时分布式锁的过期时间(秒)
+     */
+    private long lockExpireSeconds = 10;
+
+}
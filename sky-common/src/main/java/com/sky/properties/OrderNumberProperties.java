@@ -0,0 +1,27 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order-number")
+@Data
+public class OrderNumberProperties {
+
+    /**
+     * 当前节点id，0~1023；小于0时通过redis自动租用一个未被占用的节点id
+     */
+    private long nodeId = -1;
+
+    /**
+     * redis中节点id租约的有效期(秒)，节点运行期间会定时续约
+     */
+    private long leaseSeconds = 60;
+
+    /**
+     * 租约的安全时间(秒)，租约到期前这段时间内不再使用本地的节点id生成订单号，应大于节点间的时钟误差
+     */
+    private long leaseSafetySeconds = 10;
+
+}
@@ -0,0 +1,27 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order-submit")
+@Data
+public class OrderSubmitProperties {
+
+    /**
+     * 每一批最多合并写入的订单数
+     */
+    private int batchSize = 100;
+
+    /**
+     * 等待提交队列的最大长度，超过后拒绝下单
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 下单请求等待订单写入数据库的最长时间(毫秒)
+     */
+    private long waitTimeoutMillis = 10000;
+
+}
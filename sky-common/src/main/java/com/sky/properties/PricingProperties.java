@@ -0,0 +1,31 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@ConfigurationProperties(prefix = "sky.pricing")
+@Data
+public class PricingProperties {
+
+    /**
+     * 每份商品的打包费(元)
+     */
+    private int packFee = 1;
+
+    /**
+     * 每单的配送费(元)
+     */
+    private BigDecimal deliveryFee = new BigDecimal("6");
+
+    /**
+     * 口味加价(元)，口味选项 -> 加价金额，例如 加辣: 1
+     */
+    private Map<String, BigDecimal> flavorSurcharges = new HashMap<>();
+
+}
@@ -0,0 +1,25 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@ConfigurationProperties(prefix = "sky.redis-serializer")
+@Data
+public class RedisSerializerProperties {
+
+    /**
+     * 默认的value序列化方式：json、smile(二进制json)、jdk
+     */
+    private String defaultType = "json";
+
+    /**
+     * 按缓存名称单独指定序列化方式，缓存名称为key中第一个下划线之前的部分，例如dish_13的缓存名称为dish
+     */
+    private Map<String, String> caches = new HashMap<>();
+
+}
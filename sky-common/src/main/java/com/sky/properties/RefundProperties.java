@@ -0,0 +1,42 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.refund")
+@Data
+public class RefundProperties {
+
+    /**
+     * 调用退款接口的线程数
+     */
+    private int workerThreads = 4;
+
+    /**
+     * 每次最多领取的退款任务数
+     */
+    private int batchSize = 100;
+
+    /**
+     * 最大重试次数，超过后标记为退款失败，需要人工处理
+     */
+    private int maxRetries = 10;
+
+    /**
+     * 第一次重试的等待时间(秒)，之后每次翻倍
+     */
+    private long baseBackoffSeconds = 5;
+
+    /**
+     * 重试等待时间的上限(秒)
+     */
+    private long maxBackoffSeconds = 1800;
+
+    /**
+     * 领取任务后的执行期限(秒)，超过后任务可以被重新领取
+     */
+    private long claimSeconds = 60;
+
+}
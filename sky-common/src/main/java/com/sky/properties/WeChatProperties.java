@@ -18,5 +18,6 @@ public class WeChatProperties {
     private String weChatPayCertFilePath; //平台证书
     private String notifyUrl; //支付成功的回调地址
     private String refundNotifyUrl; //退款成功的回调地址
+    private String apiBaseUrl = "https://api.mch.weixin.qq.com"; //微信支付接口地址，联调或压测时可指向模拟服务
 
 }
@@ -0,0 +1,30 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConfigurationProperties(prefix = "sky.websocket")
+@Data
+public class WebSocketProperties {
+
+    /**
+     * 每个连接待发送消息队列的长度，队列满说明客户端接收太慢，直接断开
+     */
+    private int sendQueueCapacity = 100;
+
+    /**
+     * 发送消息的线程数
+     */
+    private int sendThreads = 4;
+
+    /**
+     * 允许建立连接的来源(管理端页面地址)，不配置时只允许同源
+     */
+    private List<String> allowedOrigins = new ArrayList<>();
+
+}
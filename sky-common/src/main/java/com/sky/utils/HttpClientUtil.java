@@ -1,32 +1,90 @@
 package com.sky.utils;
 
 import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpHost;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Http工具类
+ * 所有请求共用一个带连接池的HttpClient，连接保持长连接复用，避免每次请求都重新建立TCP和TLS连接
  */
+@Slf4j
 public class HttpClientUtil {
 
     static final  int TIMEOUT_MSEC = 5 * 1000;
 
+    //连接池最大连接数和每个域名的最大连接数
+    static final int MAX_TOTAL = 200;
+    static final int MAX_PER_ROUTE = 50;
+
+    //服务端未指定keep-alive时长时，连接最多保持的时间(毫秒)
+    static final long KEEP_ALIVE_MSEC = 30 * 1000;
+
+    //空闲超过该时间(秒)的连接由后台线程关闭
+    static final long MAX_IDLE_SECONDS = 60;
+
+    //连接空闲超过该时间(毫秒)后，复用前先检查连接是否可用
+    static final int VALIDATE_AFTER_INACTIVITY_MSEC = 2 * 1000;
+
+    //耗时超过该时间(毫秒)的请求记录警告日志
+    static final long SLOW_REQUEST_MSEC = 1000;
+
+    private static final PoolingHttpClientConnectionManager CONNECTION_MANAGER;
+
+    private static final CloseableHttpClient HTTP_CLIENT;
+
+    //请求统计
+    private static final LongAdder REQUEST_COUNT = new LongAdder();
+    private static final LongAdder FAILURE_COUNT = new LongAdder();
+    private static final LongAdder TOTAL_TIME_MSEC = new LongAdder();
+    //发起请求时连接池已经饱和的次数
+    private static final LongAdder POOL_SATURATED_COUNT = new LongAdder();
+
+    static {
+        CONNECTION_MANAGER = new PoolingHttpClientConnectionManager();
+        CONNECTION_MANAGER.setMaxTotal(MAX_TOTAL);
+        CONNECTION_MANAGER.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+        CONNECTION_MANAGER.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MSEC);
+
+        HTTP_CLIENT = HttpClients.custom()
+                .setConnectionManager(CONNECTION_MANAGER)
+                .setDefaultRequestConfig(builderRequestConfig())
+                .setKeepAliveStrategy((response, context) -> {
+                    long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return keepAlive > 0 ? Math.min(keepAlive, KEEP_ALIVE_MSEC) : KEEP_ALIVE_MSEC;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(MAX_IDLE_SECONDS, TimeUnit.SECONDS)
+                .build();
+    }
+
     /**
      * 发送GET方式请求
      * @param url
@@ -34,11 +92,7 @@ public class HttpClientUtil {
      * @return
      */
     public static String doGet(String url,Map<String,String> paramMap){
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-
         String result = "";
-        CloseableHttpResponse response = null;
 
         try{
             URIBuilder builder = new URIBuilder(url);
@@ -52,22 +106,10 @@ public class HttpClientUtil {
             //创建GET请求
             HttpGet httpGet = new HttpGet(uri);
 
-            //发送请求
-            response = httpClient.execute(httpGet);
-
-            //判断响应状态
-            if(response.getStatusLine().getStatusCode() == 200){
-                result = EntityUtils.toString(response.getEntity(),"UTF-8");
-            }
+            //发送请求，只有响应状态为200时才返回响应内容
+            result = execute(httpGet, true);
         }catch (Exception e){
-            e.printStackTrace();
-        }finally {
-            try {
-                response.close();
-                httpClient.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            log.error("GET请求失败：{}", url, e);
         }
 
         return result;
@@ -81,43 +123,22 @@ public class HttpClientUtil {
      * @throws IOException
      */
     public static String doPost(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-        CloseableHttpResponse response = null;
-        String resultString = "";
-
-        try {
-            // 创建Http Post请求
-            HttpPost httpPost = new HttpPost(url);
-
-            // 创建参数列表
-            if (paramMap != null) {
-                List<NameValuePair> paramList = new ArrayList();
-                for (Map.Entry<String, String> param : paramMap.entrySet()) {
-                    paramList.add(new BasicNameValuePair(param.getKey(), param.getValue()));
-                }
-                // 模拟表单
-                UrlEncodedFormEntity entity = new UrlEncodedFormEntity(paramList);
-                httpPost.setEntity(entity);
-            }
-
-            httpPost.setConfig(builderRequestConfig());
-
-            // 执行http请求
-            response = httpClient.execute(httpPost);
-
-            resultString = EntityUtils.toString(response.getEntity(), "UTF-8");
-        } catch (Exception e) {
-            throw e;
-        } finally {
-            try {
-                response.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+        // 创建Http Post请求
+        HttpPost httpPost = new HttpPost(url);
+
+        // 创建参数列表
+        if (paramMap != null) {
+            List<NameValuePair> paramList = new ArrayList();
+            for (Map.Entry<String, String> param : paramMap.entrySet()) {
+                paramList.add(new BasicNameValuePair(param.getKey(), param.getValue()));
             }
+            // 模拟表单
+            UrlEncodedFormEntity entity = new UrlEncodedFormEntity(paramList);
+            httpPost.setEntity(entity);
         }
 
-        return resultString;
+        // 执行http请求
+        return execute(httpPost, false);
     }
 
     /**
@@ -128,47 +149,95 @@ public class HttpClientUtil {
      * @throws IOException
      */
     public static String doPost4Json(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-        CloseableHttpResponse response = null;
-        String resultString = "";
-
-        try {
-            // 创建Http Post请求
-            HttpPost httpPost = new HttpPost(url);
-
-            if (paramMap != null) {
-                //构造json格式数据
-                JSONObject jsonObject = new JSONObject();
-                for (Map.Entry<String, String> param : paramMap.entrySet()) {
-                    jsonObject.put(param.getKey(),param.getValue());
-                }
-                StringEntity entity = new StringEntity(jsonObject.toString(),"utf-8");
-                //设置请求编码
-                entity.setContentEncoding("utf-8");
-                //设置数据类型
-                entity.setContentType("application/json");
-                httpPost.setEntity(entity);
+        // 创建Http Post请求
+        HttpPost httpPost = new HttpPost(url);
+
+        if (paramMap != null) {
+            //构造json格式数据
+            JSONObject jsonObject = new JSONObject();
+            for (Map.Entry<String, String> param : paramMap.entrySet()) {
+                jsonObject.put(param.getKey(),param.getValue());
             }
+            StringEntity entity = new StringEntity(jsonObject.toString(),"utf-8");
+            //设置请求编码
+            entity.setContentEncoding("utf-8");
+            //设置数据类型
+            entity.setContentType("application/json");
+            httpPost.setEntity(entity);
+        }
 
-            httpPost.setConfig(builderRequestConfig());
-
-            // 执行http请求
-            response = httpClient.execute(httpPost);
+        // 执行http请求
+        return execute(httpPost, false);
+    }
 
-            resultString = EntityUtils.toString(response.getEntity(), "UTF-8");
-        } catch (Exception e) {
+    /**
+     * 通过共享的HttpClient执行请求，关闭响应时连接归还连接池
+     * @param request
+     * @param onlyOk 为true时，响应状态不是200则返回空字符串
+     * @return
+     * @throws IOException
+     */
+    private static String execute(HttpUriRequest request, boolean onlyOk) throws IOException {
+        //已有请求在排队等待连接，或连接已全部借出，每个域名的连接数单独限制，需要同时检查域名的连接状态
+        if (isSaturated(CONNECTION_MANAGER.getTotalStats()) || isSaturated(CONNECTION_MANAGER.getStats(route(request)))) {
+            POOL_SATURATED_COUNT.increment();
+        }
+        REQUEST_COUNT.increment();
+        long start = System.currentTimeMillis();
+        try (CloseableHttpResponse response = HTTP_CLIENT.execute(request)) {
+            if (onlyOk && response.getStatusLine().getStatusCode() != 200) {
+                EntityUtils.consume(response.getEntity());
+                return "";
+            }
+            return EntityUtils.toString(response.getEntity(), "UTF-8");
+        } catch (IOException e) {
+            FAILURE_COUNT.increment();
             throw e;
         } finally {
-            try {
-                response.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+            long time = System.currentTimeMillis() - start;
+            TOTAL_TIME_MSEC.add(time);
+            if (time > SLOW_REQUEST_MSEC) {
+                log.warn("http请求耗时过长：{} {}ms，连接池状态：{}", request.getURI().getHost(), time,
+                        CONNECTION_MANAGER.getTotalStats());
             }
         }
+    }
 
-        return resultString;
+    private static boolean isSaturated(PoolStats poolStats) {
+        return poolStats.getPending() > 0 || poolStats.getLeased() >= poolStats.getMax();
     }
+
+    /**
+     * 请求对应的连接池路由，与默认的路由规划一致：不使用代理，未指定端口时使用协议的默认端口
+     * @param request
+     * @return
+     */
+    private static HttpRoute route(HttpUriRequest request) {
+        HttpHost host = URIUtils.extractHost(request.getURI());
+        boolean secure = "https".equalsIgnoreCase(host.getSchemeName());
+        int port = host.getPort() > 0 ? host.getPort() : (secure ? 443 : 80);
+        return new HttpRoute(new HttpHost(host.getHostName(), port, host.getSchemeName()), null, secure);
+    }
+
+    /**
+     * 请求和连接池统计，由HttpClientStatsTask定时记录日志
+     * @return
+     */
+    public static Map<String, Long> getStats() {
+        long requestCount = REQUEST_COUNT.sum();
+        PoolStats poolStats = CONNECTION_MANAGER.getTotalStats();
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("requestCount", requestCount);
+        stats.put("failureCount", FAILURE_COUNT.sum());
+        stats.put("avgTimeMsec", requestCount == 0 ? 0 : TOTAL_TIME_MSEC.sum() / requestCount);
+        stats.put("poolSaturatedCount", POOL_SATURATED_COUNT.sum());
+        stats.put("poolLeased", (long) poolStats.getLeased());
+        stats.put("poolPending", (long) poolStats.getPending());
+        stats.put("poolAvailable", (long) poolStats.getAvailable());
+        stats.put("poolMax", (long) poolStats.getMax());
+        return stats;
+    }
+
     private static RequestConfig builderRequestConfig() {
         return RequestConfig.custom()
                 .setConnectTimeout(TIMEOUT_MSEC)
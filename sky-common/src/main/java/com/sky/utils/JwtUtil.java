@@ -4,7 +4,10 @@ import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+
+import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
 import java.util.Date;
 import java.util.Map;
 
@@ -23,7 +26,8 @@ public class JwtUtil {
         SignatureAlgorithm signatureAlgorithm = SignatureAlgorithm.HS256;
 
         // 生成JWT的时间
-        long expMillis = System.currentTimeMillis() + ttlMillis;
+        long nowMillis = System.currentTimeMillis();
+        long expMillis = nowMillis + ttlMillis;
         Date exp = new Date(expMillis);
 
         // 设置jwt的body
@@ -32,6 +36,8 @@ public class JwtUtil {
                 .setClaims(claims)
                 // 设置签名使用的签名算法和签名使用的秘钥
                 .signWith(signatureAlgorithm, secretKey.getBytes(StandardCharsets.UTF_8))
+                // 设置签发时间，用于判断令牌是否在账号禁用之前签发
+                .setIssuedAt(new Date(nowMillis))
                 // 设置过期时间
                 .setExpiration(exp);
 
@@ -56,4 +62,28 @@ public class JwtUtil {
         return claims;
     }
 
+    /**
+     * 根据秘钥字符串创建签名秘钥，校验令牌时复用，避免每次解析都重新转换秘钥
+     *
+     * @param secretKey jwt秘钥
+     * @return
+     */
+    public static Key signingKey(String secretKey) {
+        return new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), SignatureAlgorithm.HS256.getJcaName());
+    }
+
+    /**
+     * Token解密
+     *
+     * @param signingKey 通过signingKey方法创建的签名秘钥
+     * @param token      加密后的token
+     * @return
+     */
+    public static Claims parseJWT(Key signingKey, String token) {
+        return Jwts.parser()
+                .setSigningKey(signingKey)
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
 }
@@ -5,21 +5,27 @@ import com.alibaba.fastjson.JSONObject;
 import com.sky.properties.WeChatProperties;
 import com.wechat.pay.contrib.apache.httpclient.WechatPayHttpClientBuilder;
 import com.wechat.pay.contrib.apache.httpclient.util.PemUtil;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.RandomStringUtils;
 import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.security.PrivateKey;
 import java.security.Signature;
@@ -28,48 +34,151 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 微信支付工具类
+ * 商户私钥和签名客户端只在第一次使用以及私钥、证书文件更新后加载，所有请求复用同一个连接池
  */
 @Component
+@Slf4j
 public class WeChatPayUtil {
 
-    //微信支付下单接口地址
-    public static final String JSAPI = "https://api.mch.weixin.qq.com/v3/pay/transactions/jsapi";
+    //微信支付下单接口路径，接口地址为 sky.wechat.api-base-url + 路径
+    public static final String JSAPI = "/v3/pay/transactions/jsapi";
 
-    //申请退款接口地址
-    public static final String REFUNDS = "https://api.mch.weixin.qq.com/v3/refund/domestic/refunds";
+    //申请退款接口路径
+    public static final String REFUNDS = "/v3/refund/domestic/refunds";
+
+    //连接池最大连接数，所有请求都发往同一个域名
+    private static final int MAX_CONNECTIONS = 50;
+
+    //连接、等待连接池、读取响应的超时时间(毫秒)
+    private static final int CONNECT_TIMEOUT_MSEC = 5 * 1000;
+    private static final int SOCKET_TIMEOUT_MSEC = 10 * 1000;
+
+    //空闲超过该时间(秒)的连接由后台线程关闭
+    private static final long MAX_IDLE_SECONDS = 60;
+
+    //检查私钥和证书文件是否修改的最小间隔(毫秒)
+    private static final long RELOAD_CHECK_INTERVAL_MSEC = 10 * 1000;
 
     @Autowired
     private WeChatProperties weChatProperties;
 
+    //所有客户端共用的连接池，私钥或证书更新后重建的客户端继续使用同一个连接池
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    private IdleConnectionEvictor idleConnectionEvictor;
+
+    //当前使用的私钥和客户端
+    private volatile Credentials credentials;
+
+    //上一次检查文件是否修改的时间
+    private volatile long lastCheckTime;
+
+    @PostConstruct
+    public void init() {
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+        idleConnectionEvictor = new IdleConnectionEvictor(connectionManager, MAX_IDLE_SECONDS, TimeUnit.SECONDS);
+        idleConnectionEvictor.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        idleConnectionEvictor.shutdown();
+        connectionManager.shutdown();
+    }
+
     /**
      * 获取调用微信接口的客户端工具对象
      *
      * @return
      */
-    private CloseableHttpClient getClient() {
-        PrivateKey merchantPrivateKey = null;
-        try {
-            //merchantPrivateKey商户API私钥，如何加载商户API私钥请看常见问题
-            merchantPrivateKey = PemUtil.loadPrivateKey(new FileInputStream(new File(weChatProperties.getPrivateKeyFilePath())));
-            //加载平台证书文件
-            X509Certificate x509Certificate = PemUtil.loadCertificate(new FileInputStream(new File(weChatProperties.getWeChatPayCertFilePath())));
-            //wechatPayCertificates微信支付平台证书列表。你也可以使用后面章节提到的“定时更新平台证书功能”，而不需要关心平台证书的来龙去脉
-            List<X509Certificate> wechatPayCertificates = Arrays.asList(x509Certificate);
-
-            WechatPayHttpClientBuilder builder = WechatPayHttpClientBuilder.create()
-                    .withMerchant(weChatProperties.getMchid(), weChatProperties.getMchSerialNo(), merchantPrivateKey)
-                    .withWechatPay(wechatPayCertificates);
-
-            // 通过WechatPayHttpClientBuilder构造的HttpClient，会自动的处理签名和验签
-            CloseableHttpClient httpClient = builder.build();
-            return httpClient;
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-            return null;
+    private CloseableHttpClient getClient() throws IOException {
+        return getCredentials().httpClient;
+    }
+
+    /**
+     * 获取当前的私钥和客户端，第一次使用时加载
+     * 之后每隔一段时间检查私钥和证书文件的修改时间，文件更新后重新加载，加载失败时继续使用原来的
+     *
+     * @return
+     */
+    private Credentials getCredentials() throws IOException {
+        Credentials current = credentials;
+        long now = System.currentTimeMillis();
+        if (current != null && now - lastCheckTime < RELOAD_CHECK_INTERVAL_MSEC) {
+            return current;
+        }
+        synchronized (this) {
+            current = credentials;
+            if (current != null && now - lastCheckTime < RELOAD_CHECK_INTERVAL_MSEC) {
+                return current;
+            }
+            lastCheckTime = now;
+            File privateKeyFile = new File(weChatProperties.getPrivateKeyFilePath());
+            File certFile = new File(weChatProperties.getWeChatPayCertFilePath());
+            if (current != null && current.privateKeyModified == privateKeyFile.lastModified()
+                    && current.certModified == certFile.lastModified()) {
+                return current;
+            }
+            try {
+                credentials = loadCredentials(privateKeyFile, certFile);
+            } catch (IOException | RuntimeException e) {
+                if (current == null) {
+                    throw e;
+                }
+                log.error("重新加载微信支付商户私钥或平台证书失败，继续使用原来的", e);
+                return current;
+            }
+            if (current != null) {
+                log.info("微信支付商户私钥或平台证书已更新，重新创建客户端");
+            }
+            return credentials;
+        }
+    }
+
+    /**
+     * 读取商户私钥和平台证书，创建会自动签名和验签的客户端
+     *
+     * @param privateKeyFile
+     * @param certFile
+     * @return
+     */
+    private Credentials loadCredentials(File privateKeyFile, File certFile) throws IOException {
+        //先取修改时间再读取文件，读取过程中文件被修改时下次检查会再加载一次
+        long privateKeyModified = privateKeyFile.lastModified();
+        long certModified = certFile.lastModified();
+
+        PrivateKey merchantPrivateKey;
+        X509Certificate x509Certificate;
+        //merchantPrivateKey商户API私钥
+        try (FileInputStream in = new FileInputStream(privateKeyFile)) {
+            merchantPrivateKey = PemUtil.loadPrivateKey(in);
+        }
+        //加载平台证书文件
+        try (FileInputStream in = new FileInputStream(certFile)) {
+            x509Certificate = PemUtil.loadCertificate(in);
         }
+        //wechatPayCertificates微信支付平台证书列表。你也可以使用后面章节提到的“定时更新平台证书功能”，而不需要关心平台证书的来龙去脉
+        List<X509Certificate> wechatPayCertificates = Arrays.asList(x509Certificate);
+
+        // 通过WechatPayHttpClientBuilder构造的HttpClient，会自动的处理签名和验签
+        CloseableHttpClient httpClient = WechatPayHttpClientBuilder.create()
+                .withMerchant(weChatProperties.getMchid(), weChatProperties.getMchSerialNo(), merchantPrivateKey)
+                .withWechatPay(wechatPayCertificates)
+                .setConnectionManager(connectionManager)
+                .setConnectionManagerShared(true)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(CONNECT_TIMEOUT_MSEC)
+                        .setConnectionRequestTimeout(CONNECT_TIMEOUT_MSEC)
+                        .setSocketTimeout(SOCKET_TIMEOUT_MSEC).build())
+                .build();
+
+        return new Credentials(merchantPrivateKey, httpClient, privateKeyModified, certModified);
     }
 
     /**
@@ -88,13 +197,10 @@ public class WeChatPayUtil {
         httpPost.addHeader("Wechatpay-Serial", weChatProperties.getMchSerialNo());
         httpPost.setEntity(new StringEntity(body, "UTF-8"));
 
-        CloseableHttpResponse response = httpClient.execute(httpPost);
-        try {
+        //关闭响应后连接归还连接池，客户端本身复用
+        try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
             String bodyAsString = EntityUtils.toString(response.getEntity());
             return bodyAsString;
-        } finally {
-            httpClient.close();
-            response.close();
         }
     }
 
@@ -112,13 +218,9 @@ public class WeChatPayUtil {
         httpGet.addHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
         httpGet.addHeader("Wechatpay-Serial", weChatProperties.getMchSerialNo());
 
-        CloseableHttpResponse response = httpClient.execute(httpGet);
-        try {
+        try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
             String bodyAsString = EntityUtils.toString(response.getEntity());
             return bodyAsString;
-        } finally {
-            httpClient.close();
-            response.close();
         }
     }
 
@@ -151,7 +253,7 @@ public class WeChatPayUtil {
         jsonObject.put("payer", payer);
 
         String body = jsonObject.toJSONString();
-        return post(JSAPI, body);
+        return post(weChatProperties.getApiBaseUrl() + JSAPI, body);
     }
 
     /**
@@ -168,7 +270,7 @@ public class WeChatPayUtil {
         String bodyAsString = jsapi(orderNum, total, description, openid);
         //解析返回结果
         JSONObject jsonObject = JSON.parseObject(bodyAsString);
-        System.out.println(jsonObject);
+        log.info("微信支付下单结果：{}", jsonObject);
 
         String prepayId = jsonObject.getString("prepay_id");
         if (prepayId != null) {
@@ -188,7 +290,7 @@ public class WeChatPayUtil {
             byte[] message = signMessage.getBytes();
 
             Signature signature = Signature.getInstance("SHA256withRSA");
-            signature.initSign(PemUtil.loadPrivateKey(new FileInputStream(new File(weChatProperties.getPrivateKeyFilePath()))));
+            signature.initSign(getCredentials().privateKey);
             signature.update(message);
             String packageSign = Base64.getEncoder().encodeToString(signature.sign());
 
@@ -230,6 +332,23 @@ public class WeChatPayUtil {
         String body = jsonObject.toJSONString();
 
         //调用申请退款接口
-        return post(REFUNDS, body);
+        return post(weChatProperties.getApiBaseUrl() + REFUNDS, body);
+    }
+
+    /**
+     * 商户私钥和使用该私钥签名的客户端，以及加载时私钥和证书文件的修改时间
+     */
+    private static class Credentials {
+        private final PrivateKey privateKey;
+        private final CloseableHttpClient httpClient;
+        private final long privateKeyModified;
+        private final long certModified;
+
+        private Credentials(PrivateKey privateKey, CloseableHttpClient httpClient, long privateKeyModified, long certModified) {
+            this.privateKey = privateKey;
+            this.httpClient = httpClient;
+            this.privateKeyModified = privateKeyModified;
+            this.certModified = certModified;
+        }
     }
 }
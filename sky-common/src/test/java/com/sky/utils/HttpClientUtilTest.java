@@ -0,0 +1,153 @@
+package com.sky.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 使用本地的桩http服务测试共享连接池的HttpClient
+ */
+class HttpClientUtilTest {
+
+    private static HttpServer server;
+
+    private static String baseUrl;
+
+    //服务端看到的客户端端口，端口不变说明连接被复用
+    private static final Set<Integer> CLIENT_PORTS = ConcurrentHashMap.newKeySet();
+
+    private static volatile CountDownLatch slowLatch = new CountDownLatch(0);
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/echo", exchange -> {
+            CLIENT_PORTS.add(exchange.getRemoteAddress().getPort());
+            String body = exchange.getRequestMethod() + " " + exchange.getRequestURI().getQuery() + " "
+                    + exchange.getRequestHeaders().getFirst("Content-Type") + " "
+                    + StreamUtils.copyToString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+            respond(exchange, 200, body);
+        });
+        server.createContext("/error", exchange -> respond(exchange, 500, "error"));
+        server.createContext("/slow", exchange -> {
+            try {
+                slowLatch.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "slow");
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    void getSendsParamsAndReturnsEmptyOnError() {
+        Map<String, String> params = new HashMap<>();
+        params.put("appid", "wx123");
+
+        assertEquals("GET appid=wx123 null ", HttpClientUtil.doGet(baseUrl + "/echo", params));
+        assertEquals("", HttpClientUtil.doGet(baseUrl + "/error", null));
+    }
+
+    @Test
+    void postSendsFormAndJson() throws IOException {
+        Map<String, String> params = Collections.singletonMap("code", "abc");
+
+        assertEquals("POST null application/x-www-form-urlencoded code=abc",
+                HttpClientUtil.doPost(baseUrl + "/echo", params));
+        assertEquals("POST null application/json {\"code\":\"abc\"}",
+                HttpClientUtil.doPost4Json(baseUrl + "/echo", params));
+    }
+
+    /**
+     * 连续请求复用同一个长连接
+     */
+    @Test
+    void sequentialRequestsReuseOneConnection() {
+        HttpClientUtil.doGet(baseUrl + "/echo", null);
+        CLIENT_PORTS.clear();
+        for (int i = 0; i < 20; i++) {
+            HttpClientUtil.doGet(baseUrl + "/echo", null);
+        }
+        assertEquals(1, CLIENT_PORTS.size());
+    }
+
+    /**
+     * 并发请求超过每个域名的连接数时，多出的请求等待连接，并记入连接池饱和次数
+     */
+    @Test
+    void poolSaturationIsBoundedAndCounted() throws Exception {
+        int extra = 10;
+        long saturatedBefore = HttpClientUtil.getStats().get("poolSaturatedCount");
+        slowLatch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(HttpClientUtil.MAX_PER_ROUTE + extra);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            //先占满该域名的连接，再发起多出的请求
+            for (int i = 0; i < HttpClientUtil.MAX_PER_ROUTE; i++) {
+                futures.add(executor.submit(() -> HttpClientUtil.doGet(baseUrl + "/slow", null)));
+            }
+            awaitStats("poolLeased", HttpClientUtil.MAX_PER_ROUTE);
+            for (int i = 0; i < extra; i++) {
+                futures.add(executor.submit(() -> HttpClientUtil.doGet(baseUrl + "/slow", null)));
+            }
+            awaitStats("poolPending", extra);
+            assertEquals(HttpClientUtil.MAX_PER_ROUTE, HttpClientUtil.getStats().get("poolLeased"));
+            assertEquals(saturatedBefore + extra, HttpClientUtil.getStats().get("poolSaturatedCount"));
+
+            slowLatch.countDown();
+            for (Future<String> future : futures) {
+                assertEquals("slow", future.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(0, HttpClientUtil.getStats().get("poolLeased"));
+        } finally {
+            slowLatch.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitStats(String name, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (HttpClientUtil.getStats().get(name) < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, HttpClientUtil.getStats().get(name));
+    }
+}
@@ -0,0 +1,88 @@
+package com.sky.utils;
+
+import com.sky.properties.WeChatProperties;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+
+/**
+ * 本地模拟的微信支付接口，下单返回固定的prepay_id，退款原样返回请求体
+ * 接口地址不是微信支付域名时，签名客户端不会签名请求和验证响应签名，这里只模拟网络往返
+ */
+class WeChatPayStubServer implements AutoCloseable {
+
+    static final String PREPAY_ID = "wx201410272009395522657a690389285100";
+
+    private final HttpServer server;
+
+    //最近一次收到的请求体
+    volatile String lastBody;
+
+    WeChatPayStubServer() throws IOException {
+        //关闭Nagle算法，否则复用连接时响应头和响应体分两次发送，会叠加40ms的延迟确认
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(WeChatPayUtil.JSAPI, exchange -> {
+            lastBody = StreamUtils.copyToString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+            respond(exchange, "{\"prepay_id\":\"" + PREPAY_ID + "\"}");
+        });
+        server.createContext(WeChatPayUtil.REFUNDS, exchange -> {
+            lastBody = StreamUtils.copyToString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+            respond(exchange, lastBody);
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+    }
+
+    private static void respond(com.sun.net.httpserver.HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * 把测试用的商户私钥和平台证书复制到目录中，返回指向模拟接口的配置
+     * @param dir
+     * @return
+     */
+    WeChatProperties properties(Path dir) throws IOException {
+        Path privateKey = dir.resolve("apiclient_key.pem");
+        Path cert = dir.resolve("platform_cert.pem");
+        copyResource("/wechatpay/apiclient_key.pem", privateKey);
+        copyResource("/wechatpay/platform_cert.pem", cert);
+
+        WeChatProperties properties = new WeChatProperties();
+        properties.setAppid("wx0000000000000000");
+        properties.setMchid("1900000000");
+        properties.setMchSerialNo("1DDE55AD98ED71D6EDD4A4A16996DE7B47773A8C");
+        properties.setPrivateKeyFilePath(privateKey.toString());
+        properties.setWeChatPayCertFilePath(cert.toString());
+        properties.setNotifyUrl("http://127.0.0.1/notify/paySuccess");
+        properties.setRefundNotifyUrl("http://127.0.0.1/notify/refundSuccess");
+        properties.setApiBaseUrl(baseUrl());
+        return properties;
+    }
+
+    static void copyResource(String resource, Path target) throws IOException {
+        Files.copy(WeChatPayStubServer.class.getResourceAsStream(resource), target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public void close() {
+        server.stop(0);
+    }
+}
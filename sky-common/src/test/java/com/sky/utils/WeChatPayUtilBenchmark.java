@@ -0,0 +1,116 @@
+package com.sky.utils;
+
+import com.sky.properties.WeChatProperties;
+import com.wechat.pay.contrib.apache.httpclient.WechatPayHttpClientBuilder;
+import com.wechat.pay.contrib.apache.httpclient.util.PemUtil;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.FileInputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 退款请求的基准测试，请求发往本地模拟接口
+ * cached：缓存的私钥和客户端、共用连接池；uncached：原来的做法，每次请求都读取私钥和证书、新建客户端并关闭
+ * 运行main方法，或 mvn test-compile 后用测试classpath运行
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class WeChatPayUtilBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("9.90");
+
+    private static final String BODY = "{\"out_trade_no\":\"1\",\"out_refund_no\":\"1\",\"amount\":{\"refund\":990,\"total\":990,\"currency\":\"CNY\"}}";
+
+    private Path dir;
+
+    private WeChatPayStubServer stubServer;
+
+    private WeChatProperties weChatProperties;
+
+    private WeChatPayUtil weChatPayUtil;
+
+    @Setup
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("wechatpay");
+        stubServer = new WeChatPayStubServer();
+        weChatProperties = stubServer.properties(dir);
+        weChatPayUtil = new WeChatPayUtil();
+        ReflectionTestUtils.setField(weChatPayUtil, "weChatProperties", weChatProperties);
+        weChatPayUtil.init();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        weChatPayUtil.destroy();
+        stubServer.close();
+        Files.delete(dir.resolve("apiclient_key.pem"));
+        Files.delete(dir.resolve("platform_cert.pem"));
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public String cached() throws Exception {
+        return weChatPayUtil.refund("1", "1", AMOUNT, AMOUNT);
+    }
+
+    @Benchmark
+    public String uncached() throws Exception {
+        PrivateKey merchantPrivateKey;
+        X509Certificate x509Certificate;
+        try (FileInputStream in = new FileInputStream(weChatProperties.getPrivateKeyFilePath())) {
+            merchantPrivateKey = PemUtil.loadPrivateKey(in);
+        }
+        try (FileInputStream in = new FileInputStream(weChatProperties.getWeChatPayCertFilePath())) {
+            x509Certificate = PemUtil.loadCertificate(in);
+        }
+        try (CloseableHttpClient httpClient = WechatPayHttpClientBuilder.create()
+                .withMerchant(weChatProperties.getMchid(), weChatProperties.getMchSerialNo(), merchantPrivateKey)
+                .withWechatPay(Collections.singletonList(x509Certificate))
+                .build()) {
+            HttpPost httpPost = new HttpPost(weChatProperties.getApiBaseUrl() + WeChatPayUtil.REFUNDS);
+            httpPost.addHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.toString());
+            httpPost.addHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
+            httpPost.setEntity(new StringEntity(BODY, "UTF-8"));
+            try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
+                return EntityUtils.toString(response.getEntity());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(WeChatPayUtilBenchmark.class.getSimpleName()).build()).run();
+    }
+}
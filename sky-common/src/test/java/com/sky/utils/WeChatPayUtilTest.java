@@ -0,0 +1,111 @@
+package com.sky.utils;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeChatPayUtilTest {
+
+    @TempDir
+    Path dir;
+
+    private WeChatPayStubServer stubServer;
+
+    private WeChatPayUtil weChatPayUtil;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stubServer = new WeChatPayStubServer();
+        weChatPayUtil = new WeChatPayUtil();
+        ReflectionTestUtils.setField(weChatPayUtil, "weChatProperties", stubServer.properties(dir));
+        weChatPayUtil.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        weChatPayUtil.destroy();
+        stubServer.close();
+    }
+
+    /**
+     * 下单后使用缓存的商户私钥生成调起支付的签名，签名可以用对应的证书验证
+     */
+    @Test
+    void paySignsPrepayIdWithMerchantKey() throws Exception {
+        JSONObject result = weChatPayUtil.pay("1000001", new BigDecimal("12.34"), "苍穹外卖订单", "openid-1");
+
+        JSONObject request = JSON.parseObject(stubServer.lastBody);
+        assertEquals(1234, request.getJSONObject("amount").getIntValue("total"));
+        assertEquals("openid-1", request.getJSONObject("payer").getString("openid"));
+
+        assertEquals("prepay_id=" + WeChatPayStubServer.PREPAY_ID, result.getString("package"));
+        String message = "wx0000000000000000\n" + result.getString("timeStamp") + "\n"
+                + result.getString("nonceStr") + "\n" + result.getString("package") + "\n";
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initVerify(loadCert());
+        signature.update(message.getBytes(StandardCharsets.UTF_8));
+        assertTrue(signature.verify(Base64.getDecoder().decode(result.getString("paySign"))));
+    }
+
+    @Test
+    void refundSendsAmountsInCents() throws Exception {
+        weChatPayUtil.refund("1000001", "1000001", new BigDecimal("0.01"), new BigDecimal("0.01"));
+
+        JSONObject amount = JSON.parseObject(stubServer.lastBody).getJSONObject("amount");
+        assertEquals(1, amount.getIntValue("refund"));
+        assertEquals(1, amount.getIntValue("total"));
+    }
+
+    /**
+     * 私钥和客户端只加载一次；文件更新后重新加载，新文件无效时继续使用原来的
+     */
+    @Test
+    void credentialsAreCachedAndReloadedOnFileChange() throws Exception {
+        weChatPayUtil.refund("1", "1", BigDecimal.ONE, BigDecimal.ONE);
+        Object first = ReflectionTestUtils.getField(weChatPayUtil, "credentials");
+        weChatPayUtil.refund("2", "2", BigDecimal.ONE, BigDecimal.ONE);
+        assertSame(first, ReflectionTestUtils.getField(weChatPayUtil, "credentials"));
+
+        //私钥文件更新，跳过检查间隔
+        File privateKeyFile = dir.resolve("apiclient_key.pem").toFile();
+        assertTrue(privateKeyFile.setLastModified(privateKeyFile.lastModified() + 10_000));
+        ReflectionTestUtils.setField(weChatPayUtil, "lastCheckTime", 0L);
+        weChatPayUtil.refund("3", "3", BigDecimal.ONE, BigDecimal.ONE);
+        Object reloaded = ReflectionTestUtils.getField(weChatPayUtil, "credentials");
+        assertNotSame(first, reloaded);
+
+        //写入无效的私钥，继续使用原来的客户端
+        Files.write(privateKeyFile.toPath(), "invalid".getBytes(StandardCharsets.UTF_8));
+        assertTrue(privateKeyFile.setLastModified(privateKeyFile.lastModified() + 20_000));
+        ReflectionTestUtils.setField(weChatPayUtil, "lastCheckTime", 0L);
+        weChatPayUtil.refund("4", "4", BigDecimal.ONE, BigDecimal.ONE);
+        assertSame(reloaded, ReflectionTestUtils.getField(weChatPayUtil, "credentials"));
+        assertEquals("4", JSON.parseObject(stubServer.lastBody).getString("out_trade_no"));
+    }
+
+    private X509Certificate loadCert() throws Exception {
+        try (FileInputStream in = new FileInputStream(dir.resolve("platform_cert.pem").toFile())) {
+            return (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(in);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 导出报表中的一行订单明细，订单字段在同一订单的每个明细行上重复
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class OrderExportDTO implements Serializable {
+    //订单号
+    private String number;
+
+    //下单时间
+    private LocalDateTime orderTime;
+
+    //订单状态
+    private Integer status;
+
+    //收货人
+    private String consignee;
+
+    //手机号
+    private String phone;
+
+    //地址
+    private String address;
+
+    //订单金额
+    private BigDecimal orderAmount;
+
+    //商品名称
+    private String name;
+
+    //口味
+    private String dishFlavor;
+
+    //数量
+    private Integer quantity;
+
+    //明细金额
+    private BigDecimal amount;
+}
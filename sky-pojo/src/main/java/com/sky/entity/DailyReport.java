@@ -0,0 +1,37 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 每日经营数据汇总
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyReport implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    //统计日期
+    private LocalDate reportDate;
+
+    //营业额，已完成订单的金额合计
+    private BigDecimal turnover;
+
+    //订单数
+    private Integer orderCount;
+
+    //有效订单数，即已完成订单数
+    private Integer validOrderCount;
+
+    //新增用户数
+    private Integer newUsers;
+}
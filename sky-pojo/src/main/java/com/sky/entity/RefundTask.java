@@ -0,0 +1,62 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 待执行的退款
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefundTask implements Serializable {
+
+    /**
+     * 退款状态 0待退款 1退款成功 2退款失败(重试次数用完)
+     */
+    public static final Integer PENDING = 0;
+    public static final Integer SUCCESS = 1;
+    public static final Integer FAILED = 2;
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    //订单id
+    private Long orderId;
+
+    //商户订单号
+    private String outTradeNo;
+
+    //商户退款单号，同一个退款单号重复申请只会退款一次
+    private String outRefundNo;
+
+    //退款金额
+    private BigDecimal refundAmount;
+
+    //原订单金额
+    private BigDecimal totalAmount;
+
+    //退款状态
+    private Integer status;
+
+    //已重试次数
+    private Integer retryCount;
+
+    //下次执行时间
+    private LocalDateTime nextRetryTime;
+
+    //最近一次失败原因
+    private String lastError;
+
+    private LocalDateTime createTime;
+
+    private LocalDateTime updateTime;
+}
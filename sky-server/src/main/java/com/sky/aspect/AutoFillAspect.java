@@ -12,8 +12,12 @@ import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.stereotype.Component;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.time.LocalDateTime;
+import java.util.Collection;
 
 /**
  * 自定义切面，实现公共字段自动填充处理逻辑
@@ -28,60 +32,118 @@ public class AutoFillAspect {
     @Pointcut("execution(* com.sky.mapper.*.*(..)) && @annotation(com.sky.annotation.AutoFill)")
     public void autoFillPointCut() {}
 
+    /**
+     * 每个实体类的公共字段赋值方法，第一次使用时查找一次，之后直接复用
+     */
+    private static final ClassValue<FillPlan> FILL_PLANS = new ClassValue<FillPlan>() {
+        protected FillPlan computeValue(Class<?> type) {
+            return new FillPlan(type);
+        }
+    };
+
     /**
      * 前置通知，在通知中进行公共字段的赋值
      * @param joinPoint
      */
     @Before("autoFillPointCut()")
     public void autoFill(JoinPoint joinPoint) {
-        //调试的话断点打到这里
-        log.info("开始进行公共字段自动填充...");
-
         //获取当前被拦截的方法上的数据库操作类型
         MethodSignature signature = (MethodSignature) joinPoint.getSignature(); //方法签名对象
         AutoFill autoFill = signature.getMethod().getAnnotation(AutoFill.class); //获得方法上的注解对象
         OperationType operationType = autoFill.value(); //获取数据库操作类型
         //获取到当前被拦截的方法的参数--实体对象
         Object[] args = joinPoint.getArgs();
-        if(args == null ||args.length == 0 ) {
+        if(args == null ||args.length == 0 || args[0] == null) {
             return;
         }
-        //获取实体对象，作为一个约定，实体对象放在第一个位置
-        Object entity = args[0];
+        log.debug("开始进行公共字段自动填充：{}", signature.getName());
         //准备赋值的数据
         LocalDateTime ldt = LocalDateTime.now();
         //获取当前用户ID，通过存储在threadlocal中的ID
         Long currentid = BaseContext.getCurrentId();
-        //根据当前不同的操作类型，为对应的属性通过反射来赋值
-        if(operationType == OperationType.INSERT) {
-            //为4个公共字段赋值
-            try {
-                Method setCreateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class);
-                Method setCreateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_USER, Long.class);
-                Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
-                Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER, Long.class);
 
-                //通过反射为对象赋值
-                setCreateTime.invoke(entity, ldt);
-                setCreateUser.invoke(entity, currentid);
-                setUpdateTime.invoke(entity, ldt);
-                setUpdateUser.invoke(entity, currentid);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+        //获取实体对象，作为一个约定，实体对象放在第一个位置；批量插入时第一个参数为实体集合或数组
+        Object entity = args[0];
+        if (entity instanceof Collection) {
+            for (Object item : (Collection<?>) entity) {
+                fill(item, operationType, ldt, currentid);
             }
-        }else if(operationType == OperationType.UPDATE) {
-            //为2个公共字段赋值
+        } else if (entity instanceof Object[]) {
+            for (Object item : (Object[]) entity) {
+                fill(item, operationType, ldt, currentid);
+            }
+        } else {
+            fill(entity, operationType, ldt, currentid);
+        }
+    }
+
+    /**
+     * 根据当前不同的操作类型，为对应的属性赋值
+     */
+    private static void fill(Object entity, OperationType operationType, LocalDateTime ldt, Long currentid) {
+        if (entity == null) {
+            return;
+        }
+        FillPlan plan = FILL_PLANS.get(entity.getClass());
+        try {
+            if(operationType == OperationType.INSERT) {
+                //为4个公共字段赋值
+                plan.setTime(plan.setCreateTime, entity, ldt);
+                plan.setUser(plan.setCreateUser, entity, currentid);
+                plan.setTime(plan.setUpdateTime, entity, ldt);
+                plan.setUser(plan.setUpdateUser, entity, currentid);
+            }else if(operationType == OperationType.UPDATE) {
+                //为2个公共字段赋值
+                plan.setTime(plan.setUpdateTime, entity, ldt);
+                plan.setUser(plan.setUpdateUser, entity, currentid);
+            }
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 一个实体类的公共字段赋值方法，实体类没有对应的set方法时为null
+     */
+    private static class FillPlan {
+
+        private static final MethodType TIME_SETTER = MethodType.methodType(void.class, Object.class, LocalDateTime.class);
+        private static final MethodType USER_SETTER = MethodType.methodType(void.class, Object.class, Long.class);
+
+        private final MethodHandle setCreateTime;
+        private final MethodHandle setCreateUser;
+        private final MethodHandle setUpdateTime;
+        private final MethodHandle setUpdateUser;
+
+        private FillPlan(Class<?> type) {
+            setCreateTime = find(type, AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class, TIME_SETTER);
+            setCreateUser = find(type, AutoFillConstant.SET_CREATE_USER, Long.class, USER_SETTER);
+            setUpdateTime = find(type, AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class, TIME_SETTER);
+            setUpdateUser = find(type, AutoFillConstant.SET_UPDATE_USER, Long.class, USER_SETTER);
+        }
+
+        private static MethodHandle find(Class<?> type, String name, Class<?> parameterType, MethodType methodType) {
             try {
-                Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
-                Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER, Long.class);
+                Method method = type.getMethod(name, parameterType);
+                //统一为(Object, 参数)的形式，调用时可以使用invokeExact
+                return MethodHandles.publicLookup().unreflect(method).asType(methodType);
+            } catch (NoSuchMethodException e) {
+                return null;
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
 
-                //通过反射为对象赋值
-                setUpdateTime.invoke(entity, ldt);
-                setUpdateUser.invoke(entity, currentid);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+        private void setTime(MethodHandle setter, Object entity, LocalDateTime value) throws Throwable {
+            if (setter != null) {
+                setter.invokeExact(entity, value);
             }
         }
 
+        private void setUser(MethodHandle setter, Object entity, Long value) throws Throwable {
+            if (setter != null) {
+                setter.invokeExact(entity, value);
+            }
+        }
     }
 }
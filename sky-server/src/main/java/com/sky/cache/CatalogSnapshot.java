@@ -0,0 +1,167 @@
+package com.sky.cache;
+
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 菜品、套餐的本地快照，用于加入购物车和下单时查询名称、图片、价格
+ * 快照按id排序保存在数组中，查询时二分查找，整体替换不加锁；
+ * 管理端修改菜品、套餐后递增redis中的版本号，各节点每秒比较版本号，变化时重新加载；快照中没有的id直接查询数据库
+ * 返回的对象由所有线程共享，调用方不能修改；快照同时预先计算好起售商品的价格(分)，下单计价时不用再转换金额
+ */
+@Component
+@Slf4j
+public class CatalogSnapshot {
+
+    //菜品、套餐数据的版本号
+    private static final String VERSION_KEY = "catalog_version";
+
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * 根据id查询菜品
+     * @param id
+     * @return
+     */
+    public Dish getDish(Long id) {
+        Snapshot current = snapshot;
+        int index = Arrays.binarySearch(current.dishIds, id);
+        if (index >= 0) {
+            return current.dishes[index];
+        }
+        return dishMapper.getById(id);
+    }
+
+    /**
+     * 根据id查询套餐
+     * @param id
+     * @return
+     */
+    public Setmeal getSetmeal(Long id) {
+        Snapshot current = snapshot;
+        int index = Arrays.binarySearch(current.setmealIds, id);
+        if (index >= 0) {
+            return current.setmeals[index];
+        }
+        return setmealMapper.getBySetmealId(id);
+    }
+
+    /**
+     * 查询起售中菜品的价格
+     * @param id
+     * @return 价格(分)，菜品不存在或已停售时返回-1
+     */
+    public long getDishPrice(Long id) {
+        Snapshot current = snapshot;
+        int index = Arrays.binarySearch(current.dishIds, id);
+        if (index >= 0) {
+            return current.dishPrices[index];
+        }
+        Dish dish = dishMapper.getById(id);
+        return dish == null ? -1 : priceOf(dish.getStatus(), dish.getPrice());
+    }
+
+    /**
+     * 查询起售中套餐的价格
+     * @param id
+     * @return 价格(分)，套餐不存在或已停售时返回-1
+     */
+    public long getSetmealPrice(Long id) {
+        Snapshot current = snapshot;
+        int index = Arrays.binarySearch(current.setmealIds, id);
+        if (index >= 0) {
+            return current.setmealPrices[index];
+        }
+        Setmeal setmeal = setmealMapper.getBySetmealId(id);
+        return setmeal == null ? -1 : priceOf(setmeal.getStatus(), setmeal.getPrice());
+    }
+
+    private static long priceOf(Integer status, BigDecimal price) {
+        if (!StatusConstant.ENABLE.equals(status) || price == null) {
+            return -1;
+        }
+        return price.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    /**
+     * 管理端修改了菜品或套餐，需要在修改的事务提交后调用
+     */
+    public void changed() {
+        stringRedisTemplate.opsForValue().increment(VERSION_KEY);
+    }
+
+    /**
+     * 每秒检查版本号，与本地快照不一致时重新加载
+     * 先读版本号再加载数据，加载期间发生的修改会使版本号再次变化，下次检查时重新加载
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void refresh() {
+        String version = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+        if (version == null) {
+            version = "0";
+        }
+        if (version.equals(snapshot.version)) {
+            return;
+        }
+        List<Dish> dishList = dishMapper.listAll();
+        List<Setmeal> setmealList = setmealMapper.listAll();
+        snapshot = new Snapshot(version, dishList, setmealList);
+        log.info("菜品套餐快照已更新，版本：{}，菜品：{}，套餐：{}", version, dishList.size(), setmealList.size());
+    }
+
+    /**
+     * 不可变的快照，数组按id升序
+     */
+    private static class Snapshot {
+
+        private static final Snapshot EMPTY = new Snapshot(null, Collections.emptyList(), Collections.emptyList());
+
+        private final String version;
+        private final long[] dishIds;
+        private final Dish[] dishes;
+        private final long[] dishPrices;
+        private final long[] setmealIds;
+        private final Setmeal[] setmeals;
+        private final long[] setmealPrices;
+
+        private Snapshot(String version, List<Dish> dishList, List<Setmeal> setmealList) {
+            this.version = version;
+            //查询时已按id升序
+            dishIds = new long[dishList.size()];
+            dishPrices = new long[dishList.size()];
+            dishes = dishList.toArray(new Dish[0]);
+            for (int i = 0; i < dishes.length; i++) {
+                dishIds[i] = dishes[i].getId();
+                dishPrices[i] = priceOf(dishes[i].getStatus(), dishes[i].getPrice());
+            }
+            setmealIds = new long[setmealList.size()];
+            setmealPrices = new long[setmealList.size()];
+            setmeals = setmealList.toArray(new Setmeal[0]);
+            for (int i = 0; i < setmeals.length; i++) {
+                setmealIds[i] = setmeals[i].getId();
+                setmealPrices[i] = priceOf(setmeals[i].getStatus(), setmeals[i].getPrice());
+            }
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.config.RedisConfiguration;
+import com.sky.properties.MenuCacheProperties;
+import com.sky.properties.RedisSerializerProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * C端菜单二级缓存
+ * 一级缓存为本地Caffeine，二级缓存为Redis
+ * 管理端修改数据时删除Redis中的数据，并通过Redis发布订阅通知所有节点清理本地缓存
+ * 缓存未命中时，同一个key只允许一个线程(跨节点通过redis锁)查询数据库，空结果也会短暂缓存
+ * 写入redis时把key登记到所属缓存名称的索引set中，按前缀清理时只删除索引中的key，不再用KEYS遍历整个redis
+ */
+@Component
+@Slf4j
+public class MenuCache implements MessageListener {
+
+    //缓存失效通知的频道
+    public static final String CHANNEL = "menu_cache_evict";
+
+    //加载数据时分布式锁的key前缀
+    private static final String LOCK_PREFIX = "lock_";
+
+    //缓存key索引的前缀，完整key为 menu_keys_缓存名称，例如menu_keys_dish
+    private static final String INDEX_PREFIX = "menu_keys_";
+
+    //启动时登记已有key的缓存名称，以及SCAN每批的数量
+    private static final String[] INDEXED_CACHES = {"dish", "setmeal"};
+    private static final int SCAN_COUNT = 500;
+
+    //未抢到分布式锁时等待其他节点加载结果的次数和间隔(毫秒)
+    private static final int LOCK_RETRY_TIMES = 20;
+    private static final long LOCK_RETRY_INTERVAL = 50;
+
+    //只有锁的持有者才能释放锁
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private MenuCacheProperties menuCacheProperties;
+    @Autowired
+    private RedisSerializerProperties redisSerializerProperties;
+    @Autowired
+    private RedisConnectionFactory redisConnectionFactory;
+
+    //单独指定了序列化方式的缓存，缓存名称 -> 对应的redis模版对象
+    private final Map<String, RedisTemplate> cacheTemplates = new HashMap<>();
+
+    private Cache<String, Object> localCache;
+
+    //本节点正在加载中的key，同一个key的并发请求共享同一次加载结果
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    //各级缓存的命中、未命中次数
+    private final LongAdder localHit = new LongAdder();
+    private final LongAdder localMiss = new LongAdder();
+    private final LongAdder redisHit = new LongAdder();
+    private final LongAdder redisMiss = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(menuCacheProperties.getLocalMaximumSize())
+                .expireAfterWrite(menuCacheProperties.getLocalExpireSeconds(), TimeUnit.SECONDS)
+                .build();
+
+        redisSerializerProperties.getCaches().forEach((cacheName, serializerType) ->
+                cacheTemplates.put(cacheName, RedisConfiguration.createRedisTemplate(redisConnectionFactory, serializerType)));
+
+        registerExistingKeys();
+    }
+
+    /**
+     * 把redis中已有但还没有登记到索引的缓存key登记到索引中，使用SCAN分批遍历，不阻塞redis
+     */
+    private void registerExistingKeys() {
+        for (String cacheName : INDEXED_CACHES) {
+            try {
+                Set<String> keys = scan(cacheName + "_*");
+                if (!keys.isEmpty()) {
+                    stringRedisTemplate.opsForSet().add(INDEX_PREFIX + cacheName, keys.toArray(new String[0]));
+                    stringRedisTemplate.expire(INDEX_PREFIX + cacheName, maxExpireSeconds(), TimeUnit.SECONDS);
+                }
+            } catch (Exception e) {
+                log.warn("登记已有菜单缓存key失败：{}", cacheName, e);
+            }
+        }
+    }
+
+    private Set<String> scan(String pattern) {
+        Set<String> keys = new HashSet<>();
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(SCAN_COUNT).build();
+        try (Cursor<String> cursor = stringRedisTemplate.scan(options)) {
+            cursor.forEachRemaining(keys::add);
+        }
+        return keys;
+    }
+
+    /**
+     * 缓存名称为key中第一个下划线之前的部分
+     * @param key
+     * @return
+     */
+    private static String cacheName(String key) {
+        int index = key.indexOf('_');
+        return index > 0 ? key.substring(0, index) : key;
+    }
+
+    private long maxExpireSeconds() {
+        return menuCacheProperties.getRedisExpireSeconds() + menuCacheProperties.getRedisExpireJitterSeconds();
+    }
+
+    /**
+     * 根据key获取对应缓存的redis模版对象，缓存名称为key中第一个下划线之前的部分
+     * @param key
+     * @return
+     */
+    private RedisTemplate redisTemplate(String key) {
+        if (!cacheTemplates.isEmpty()) {
+            RedisTemplate template = cacheTemplates.get(cacheName(key));
+            if (template != null) {
+                return template;
+            }
+        }
+        return redisTemplate;
+    }
+
+    /**
+     * 查询缓存，先查本地缓存，再查redis，redis命中时回填本地缓存
+     * @param key
+     * @return 两级缓存都未命中时返回null
+     */
+    public <T> T get(String key) {
+        Object value = localCache.getIfPresent(key);
+        if (value != null) {
+            localHit.increment();
+            return (T) value;
+        }
+        localMiss.increment();
+
+        value = redisTemplate(key).opsForValue().get(key);
+        if (value != null) {
+            redisHit.increment();
+            localCache.put(key, value);
+            return (T) value;
+        }
+        redisMiss.increment();
+        return null;
+    }
+
+    /**
+     * 查询缓存，两级缓存都未命中时通过loader加载并写入缓存
+     * 同一个key在本节点内只会有一个线程执行loader，其他线程等待并共享结果
+     * @param key
+     * @param loader
+     * @return
+     */
+    public <T> T get(String key, Supplier<T> loader) {
+        T value = get(key);
+        if (value != null) {
+            return value;
+        }
+
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            //已有线程在加载，等待其结果
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            Object loaded = loadWithLock(key, loader);
+            future.complete(loaded);
+            return (T) loaded;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * 通过redis锁保证多个节点中只有一个去查询数据库
+     * 没抢到锁的节点轮询redis等待结果，等待超时后自行查询数据库
+     * @param key
+     * @param loader
+     * @return
+     */
+    private Object loadWithLock(String key, Supplier<?> loader) {
+        String lockKey = LOCK_PREFIX + key;
+        String token = UUID.randomUUID().toString();
+        Boolean locked = stringRedisTemplate.opsForValue()
+                .setIfAbsent(lockKey, token, menuCacheProperties.getLockExpireSeconds(), TimeUnit.SECONDS);
+
+        if (!Boolean.TRUE.equals(locked)) {
+            for (int i = 0; i < LOCK_RETRY_TIMES; i++) {
+                try {
+                    Thread.sleep(LOCK_RETRY_INTERVAL);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                Object value = redisTemplate(key).opsForValue().get(key);
+                if (value != null) {
+                    localCache.put(key, value);
+                    return value;
+                }
+            }
+            log.warn("等待菜单缓存加载超时，直接查询数据库：{}", key);
+            Object value = loader.get();
+            put(key, value);
+            return value;
+        }
+
+        try {
+            //拿到锁之后再查一次redis，可能其他节点刚刚已经加载完成
+            Object value = redisTemplate(key).opsForValue().get(key);
+            if (value != null) {
+                localCache.put(key, value);
+                return value;
+            }
+            value = loader.get();
+            put(key, value);
+            return value;
+        } finally {
+            stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey), token);
+        }
+    }
+
+    /**
+     * 同时写入redis和本地缓存，并把key登记到索引中
+     * redis过期时间追加随机时长，避免同一时间大量key过期；空结果只缓存较短时间
+     * 索引的过期时间不短于其中任何一个key，索引中残留已过期的key不影响清理
+     * @param key
+     * @param value
+     */
+    public void put(String key, Object value) {
+        long expireSeconds;
+        if (value instanceof Collection && ((Collection<?>) value).isEmpty()) {
+            expireSeconds = menuCacheProperties.getEmptyExpireSeconds();
+        } else {
+            expireSeconds = menuCacheProperties.getRedisExpireSeconds()
+                    + ThreadLocalRandom.current().nextLong(menuCacheProperties.getRedisExpireJitterSeconds() + 1);
+        }
+        String indexKey = INDEX_PREFIX + cacheName(key);
+        stringRedisTemplate.opsForSet().add(indexKey, key);
+        stringRedisTemplate.expire(indexKey, maxExpireSeconds(), TimeUnit.SECONDS);
+        redisTemplate(key).opsForValue().set(key, value, expireSeconds, TimeUnit.SECONDS);
+        localCache.put(key, value);
+    }
+
+    /**
+     * 清理缓存，支持具体的key或者以*结尾的前缀模式，例如dish_*
+     * 具体的key直接删除；前缀模式只删除索引中登记的key，不遍历整个redis
+     * 使用UNLINK在redis后台线程释放内存，清理redis后广播失效消息，各节点收到后清理自己的本地缓存
+     * @param pattern
+     */
+    public void evict(String pattern) {
+        if (pattern.endsWith("*")) {
+            String indexKey = INDEX_PREFIX + cacheName(pattern);
+            Set<String> keys = stringRedisTemplate.opsForSet().members(indexKey);
+            List<String> unlinkKeys = new ArrayList<>();
+            if (keys != null) {
+                String prefix = pattern.substring(0, pattern.length() - 1);
+                for (String key : keys) {
+                    if (key.startsWith(prefix)) {
+                        unlinkKeys.add(key);
+                    }
+                }
+            }
+            if (!unlinkKeys.isEmpty()) {
+                stringRedisTemplate.unlink(unlinkKeys);
+                stringRedisTemplate.opsForSet().remove(indexKey, unlinkKeys.toArray());
+            }
+        } else {
+            stringRedisTemplate.unlink(pattern);
+            stringRedisTemplate.opsForSet().remove(INDEX_PREFIX + cacheName(pattern), pattern);
+        }
+        evictLocal(pattern);
+        stringRedisTemplate.convertAndSend(CHANNEL, pattern);
+    }
+
+    /**
+     * 清理多个具体的key，例如菜品修改前后所属的两个分类
+     * @param keys
+     */
+    public void evict(Collection<String> keys) {
+        for (String key : new LinkedHashSet<>(keys)) {
+            evict(key);
+        }
+    }
+
+    /**
+     * 收到其他节点(包括自己)发出的失效消息，清理本地缓存
+     * @param message
+     * @param pattern
+     */
+    public void onMessage(Message message, byte[] pattern) {
+        String key = new String(message.getBody(), StandardCharsets.UTF_8);
+        log.debug("收到菜单缓存失效消息：{}", key);
+        evictLocal(key);
+    }
+
+    private void evictLocal(String pattern) {
+        if (pattern.endsWith("*")) {
+            String prefix = pattern.substring(0, pattern.length() - 1);
+            localCache.asMap().keySet().removeIf(k -> k.startsWith(prefix));
+        } else {
+            localCache.invalidate(pattern);
+        }
+    }
+
+    /**
+     * 各级缓存的命中统计
+     * @return
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("localHit", localHit.sum());
+        stats.put("localMiss", localMiss.sum());
+        stats.put("redisHit", redisHit.sum());
+        stats.put("redisMiss", redisMiss.sum());
+        stats.put("localSize", localCache.estimatedSize());
+        return stats;
+    }
+
+    /**
+     * 每10分钟输出一次缓存命中统计
+     */
+    @Scheduled(cron = "0 0/10 * * * ?")
+    public void logStats() {
+        log.info("菜单缓存命中统计：{}", getStats());
+    }
+}
@@ -0,0 +1,151 @@
+package com.sky.cache;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.sky.json.JacksonObjectMapper;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+
+/**
+ * redis value序列化器
+ * 支持json、smile(二进制json)、jdk三种方式，json和smile复用项目的JacksonObjectMapper
+ * 反序列化时识别出旧的jdk序列化数据会自动兼容读取，切换序列化方式后旧缓存依然可用
+ * 反序列化只允许实体类、VO以及集合、金额、时间类型，避免写入redis的数据指定任意类型造成反序列化漏洞
+ */
+public class RedisValueSerializer implements RedisSerializer<Object> {
+
+    public static final String JSON = "json";
+    public static final String SMILE = "smile";
+    public static final String JDK = "jdk";
+
+    //jdk序列化数据的魔数 0xACED
+    private static final byte JDK_MAGIC_0 = (byte) 0xAC;
+    private static final byte JDK_MAGIC_1 = (byte) 0xED;
+
+    //允许反序列化的类型所在的包
+    private static final String[] ALLOWED_PACKAGES = {"com.sky.entity.", "com.sky.vo.", "java.util.", "java.math.", "java.time."};
+
+    //jdk序列化还需要允许包装类型、字符串等基础类型
+    private static final String JDK_LANG_PACKAGE = "java.lang.";
+
+    private static final PolymorphicTypeValidator TYPE_VALIDATOR = typeValidator();
+
+    private static final JdkSerializationRedisSerializer JDK_SERIALIZER =
+            new JdkSerializationRedisSerializer(new SerializingConverter(), RedisValueSerializer::readJdk);
+
+    private final RedisSerializer<Object> delegate;
+
+    private RedisValueSerializer(RedisSerializer<Object> delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 根据序列化方式创建序列化器
+     * @param type json、smile、jdk
+     * @return
+     */
+    public static RedisValueSerializer of(String type) {
+        if (JSON.equalsIgnoreCase(type)) {
+            return new RedisValueSerializer(new GenericJackson2JsonRedisSerializer(typedObjectMapper(new JacksonObjectMapper())));
+        }
+        if (SMILE.equalsIgnoreCase(type)) {
+            return new RedisValueSerializer(new GenericJackson2JsonRedisSerializer(typedObjectMapper(new JacksonObjectMapper(new SmileFactory()))));
+        }
+        if (JDK.equalsIgnoreCase(type)) {
+            return new RedisValueSerializer((RedisSerializer) JDK_SERIALIZER);
+        }
+        throw new IllegalArgumentException("不支持的redis序列化方式：" + type);
+    }
+
+    /**
+     * 写入类型信息，反序列化时才能还原出List<DishVO>等具体类型
+     * @param objectMapper
+     * @return
+     */
+    private static ObjectMapper typedObjectMapper(ObjectMapper objectMapper) {
+        objectMapper.activateDefaultTyping(TYPE_VALIDATOR, ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        return objectMapper;
+    }
+
+    private static PolymorphicTypeValidator typeValidator() {
+        BasicPolymorphicTypeValidator.Builder builder = BasicPolymorphicTypeValidator.builder();
+        for (String allowedPackage : ALLOWED_PACKAGES) {
+            builder.allowIfSubType(allowedPackage);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 读取jdk序列化数据，只加载允许的类型
+     * @param bytes
+     * @return
+     */
+    private static Object readJdk(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+            protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                if (!isJdkAllowed(desc.getName())) {
+                    throw new InvalidClassException(desc.getName(), "不允许反序列化的类型");
+                }
+                try {
+                    return Class.forName(desc.getName(), false, RedisValueSerializer.class.getClassLoader());
+                } catch (ClassNotFoundException e) {
+                    return super.resolveClass(desc);
+                }
+            }
+        }) {
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new SerializationException("jdk反序列化失败", e);
+        }
+    }
+
+    static boolean isJdkAllowed(String className) {
+        //数组按元素类型判断，基本类型数组直接允许
+        String name = className;
+        while (name.startsWith("[")) {
+            name = name.substring(1);
+        }
+        if (name.length() == 1) {
+            return true;
+        }
+        if (name.startsWith("L") && name.endsWith(";")) {
+            name = name.substring(1, name.length() - 1);
+        }
+        return name.startsWith(JDK_LANG_PACKAGE) || isAllowed(name);
+    }
+
+    private static boolean isAllowed(String className) {
+        for (String allowedPackage : ALLOWED_PACKAGES) {
+            if (className.startsWith(allowedPackage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public byte[] serialize(Object value) throws SerializationException {
+        return delegate.serialize(value);
+    }
+
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (delegate != JDK_SERIALIZER && bytes.length > 1 && bytes[0] == JDK_MAGIC_0 && bytes[1] == JDK_MAGIC_1) {
+            return JDK_SERIALIZER.deserialize(bytes);
+        }
+        return delegate.deserialize(bytes);
+    }
+}
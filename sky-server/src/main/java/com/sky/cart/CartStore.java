@@ -0,0 +1,387 @@
+package com.sky.cart;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.ShoppingcartMapper;
+import com.sky.properties.CartProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 购物车存储
+ * 每个用户的购物车保存在一个redis hash中，加减商品通过lua脚本原子修改数量，数量减到0时删除商品；
+ * 修改后把用户记入待写入集合，由定时任务每秒把这段时间内有修改的用户合并为一个事务写入数据库，连续点击加减只写一次数据库；
+ * 取出的用户先记入处理中集合，事务提交后才删除，写入失败放回待写入集合，节点宕机时由定时任务把超时的用户放回待写入集合
+ * redis中没有购物车时(第一次使用或已过期)从数据库加载
+ */
+@Component
+@Slf4j
+public class CartStore {
+
+    //购物车的key前缀，完整key为 cart_用户id
+    private static final String CART_PREFIX = "cart_";
+
+    //有修改、等待写入数据库的用户id集合
+    private static final String DIRTY_KEY = "cart_dirty";
+
+    //正在写入数据库的用户id，zset的分数为领取时间(毫秒)
+    private static final String PROCESSING_KEY = "cart_flushing";
+
+    //写入数据库时的用户锁，完整key为 cart_flush_用户id
+    private static final String FLUSH_LOCK_PREFIX = "cart_flush_";
+
+    //hash中的字段：加载标记、商品数量(n:商品key)、商品信息(i:商品key)
+    private static final String LOADED_FIELD = "loaded";
+    private static final String NUMBER_PREFIX = "n:";
+    private static final String ITEM_PREFIX = "i:";
+
+    //脚本返回值：购物车还未从数据库加载、购物车中没有该商品
+    private static final long NOT_LOADED = -2;
+    private static final long NOT_FOUND = -1;
+
+    //修改商品数量，商品不存在时如果传入了商品信息则新增；数量减到0时删除商品，返回修改后的数量
+    private static final DefaultRedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 0 then return -2 end " +
+            "local numberField = 'n:' .. ARGV[2] " +
+            "local itemField = 'i:' .. ARGV[2] " +
+            "if redis.call('hexists', KEYS[1], itemField) == 0 then " +
+            "  if ARGV[4] == '' or tonumber(ARGV[3]) <= 0 then return -1 end " +
+            "  redis.call('hset', KEYS[1], itemField, ARGV[4]) " +
+            "end " +
+            "local number = redis.call('hincrby', KEYS[1], numberField, ARGV[3]) " +
+            "if number <= 0 then redis.call('hdel', KEYS[1], numberField, itemField) number = 0 end " +
+            "redis.call('expire', KEYS[1], ARGV[5]) " +
+            "redis.call('sadd', KEYS[2], ARGV[1]) " +
+            "return number",
+            Long.class);
+
+    //批量添加商品，已存在的商品累加数量，参数为 用户id、过期时间，之后每3个一组：商品key、数量、商品信息
+    private static final DefaultRedisScript<Long> ADD_ALL_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 0 then return -2 end " +
+            "for i = 3, #ARGV, 3 do " +
+            "  redis.call('hsetnx', KEYS[1], 'i:' .. ARGV[i], ARGV[i + 2]) " +
+            "  redis.call('hincrby', KEYS[1], 'n:' .. ARGV[i], ARGV[i + 1]) " +
+            "end " +
+            "redis.call('expire', KEYS[1], ARGV[2]) " +
+            "redis.call('sadd', KEYS[2], ARGV[1]) " +
+            "return 1",
+            Long.class);
+
+    //从数据库加载购物车，其他请求已经加载过时不覆盖
+    private static final DefaultRedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 1 then return 0 end " +
+            "redis.call('hset', KEYS[1], 'loaded', '1') " +
+            "for i = 2, #ARGV, 2 do redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+            "redis.call('expire', KEYS[1], ARGV[1]) " +
+            "return 1",
+            Long.class);
+
+    //清空购物车，保留加载标记，避免在写入数据库之前又从数据库加载旧数据
+    private static final DefaultRedisScript<Long> CLEAN_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('del', KEYS[1]) " +
+            "redis.call('hset', KEYS[1], 'loaded', '1') " +
+            "redis.call('expire', KEYS[1], ARGV[2]) " +
+            "redis.call('sadd', KEYS[2], ARGV[1]) " +
+            "return 1",
+            Long.class);
+
+    //从待写入集合中取出用户，同时记入处理中集合
+    private static final DefaultRedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "local ids = redis.call('spop', KEYS[1], ARGV[1]) " +
+            "for i = 1, #ids do redis.call('zadd', KEYS[2], ARGV[2], ids[i]) end " +
+            "return ids",
+            List.class);
+
+    //处理结束，删除本次领取的处理中记录(其他节点重新领取的不删除)，需要重试时放回待写入集合
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "for i = 3, #ARGV do " +
+            "  local score = redis.call('zscore', KEYS[1], ARGV[i]) " +
+            "  if score and tonumber(score) == tonumber(ARGV[1]) then redis.call('zrem', KEYS[1], ARGV[i]) end " +
+            "  if ARGV[2] == '1' then redis.call('sadd', KEYS[2], ARGV[i]) end " +
+            "end " +
+            "return 1",
+            Long.class);
+
+    //把领取后超时未处理完成的用户放回待写入集合
+    private static final DefaultRedisScript<Long> REQUEUE_SCRIPT = new DefaultRedisScript<>(
+            "local ids = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'limit', 0, ARGV[2]) " +
+            "for i = 1, #ids do redis.call('zrem', KEYS[1], ids[i]) redis.call('sadd', KEYS[2], ids[i]) end " +
+            "return #ids",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ShoppingcartMapper shoppingcartMapper;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private CartProperties cartProperties;
+
+    /**
+     * 修改购物车中已有商品的数量，数量减到0时删除
+     * @param userId
+     * @param item 商品，通过dishId、dishFlavor或setmealId确定
+     * @param delta 增加的数量，减少时为负数
+     * @return 购物车中没有该商品时返回false
+     */
+    public boolean increment(Long userId, ShoppingCart item, int delta) {
+        return execute(userId, itemKey(item), delta, "") != NOT_FOUND;
+    }
+
+    /**
+     * 向购物车添加商品，已存在时累加数量
+     * @param userId
+     * @param item 商品信息和数量
+     */
+    public void add(Long userId, ShoppingCart item) {
+        execute(userId, itemKey(item), item.getNumber(), info(item));
+    }
+
+    /**
+     * 向购物车批量添加商品，已存在的商品累加数量，所有商品在一次脚本调用中原子写入
+     * @param userId
+     * @param items 商品信息和数量
+     */
+    public void addAll(Long userId, List<ShoppingCart> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        List<String> keys = Arrays.asList(CART_PREFIX + userId, DIRTY_KEY);
+        Object[] args = new Object[2 + items.size() * 3];
+        args[0] = String.valueOf(userId);
+        args[1] = String.valueOf(cartProperties.getExpireSeconds());
+        int i = 2;
+        for (ShoppingCart item : items) {
+            args[i++] = itemKey(item);
+            args[i++] = String.valueOf(item.getNumber());
+            args[i++] = info(item);
+        }
+        Long result = stringRedisTemplate.execute(ADD_ALL_SCRIPT, keys, args);
+        if (result != null && result == NOT_LOADED) {
+            load(userId);
+            stringRedisTemplate.execute(ADD_ALL_SCRIPT, keys, args);
+        }
+    }
+
+    /**
+     * 保存在hash中的商品信息，不包含数量
+     * @param item
+     * @return
+     */
+    private static String info(ShoppingCart item) {
+        ShoppingCart info = ShoppingCart.builder()
+                .name(item.getName())
+                .dishId(item.getDishId())
+                .setmealId(item.getSetmealId())
+                .dishFlavor(item.getDishFlavor())
+                .amount(item.getAmount())
+                .image(item.getImage())
+                .createTime(item.getCreateTime())
+                .build();
+        return JSON.toJSONString(info);
+    }
+
+    /**
+     * 查询用户的购物车，按加入时间排序
+     * @param userId
+     * @return
+     */
+    public List<ShoppingCart> list(Long userId) {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(CART_PREFIX + userId);
+        if (entries.isEmpty()) {
+            load(userId);
+            entries = stringRedisTemplate.opsForHash().entries(CART_PREFIX + userId);
+        }
+        return toList(userId, entries);
+    }
+
+    /**
+     * 清空用户的购物车
+     * @param userId
+     */
+    public void clean(Long userId) {
+        stringRedisTemplate.execute(CLEAN_SCRIPT, Arrays.asList(CART_PREFIX + userId, DIRTY_KEY),
+                String.valueOf(userId), String.valueOf(cartProperties.getExpireSeconds()));
+    }
+
+    private long execute(Long userId, String itemKey, int delta, String info) {
+        List<String> keys = Arrays.asList(CART_PREFIX + userId, DIRTY_KEY);
+        String[] args = {String.valueOf(userId), itemKey, String.valueOf(delta), info,
+                String.valueOf(cartProperties.getExpireSeconds())};
+        Long result = stringRedisTemplate.execute(INCREMENT_SCRIPT, keys, (Object[]) args);
+        if (result != null && result == NOT_LOADED) {
+            load(userId);
+            result = stringRedisTemplate.execute(INCREMENT_SCRIPT, keys, (Object[]) args);
+        }
+        return result == null ? NOT_FOUND : result;
+    }
+
+    /**
+     * 从数据库加载购物车到redis，同一商品有多条记录时合并数量
+     * @param userId
+     */
+    private void load(Long userId) {
+        Map<String, ShoppingCart> items = new LinkedHashMap<>();
+        for (ShoppingCart cart : shoppingcartMapper.getAll(userId)) {
+            ShoppingCart existing = items.putIfAbsent(itemKey(cart), cart);
+            if (existing != null) {
+                existing.setNumber(existing.getNumber() + cart.getNumber());
+            }
+        }
+        List<String> args = new ArrayList<>(items.size() * 4 + 1);
+        args.add(String.valueOf(cartProperties.getExpireSeconds()));
+        items.forEach((itemKey, cart) -> {
+            Integer number = cart.getNumber();
+            cart.setId(null);
+            cart.setUserId(null);
+            cart.setNumber(null);
+            args.add(NUMBER_PREFIX + itemKey);
+            args.add(String.valueOf(number));
+            args.add(ITEM_PREFIX + itemKey);
+            args.add(JSON.toJSONString(cart));
+        });
+        stringRedisTemplate.execute(LOAD_SCRIPT, Collections.singletonList(CART_PREFIX + userId), args.toArray());
+    }
+
+    private static List<ShoppingCart> toList(Long userId, Map<Object, Object> entries) {
+        List<ShoppingCart> list = new ArrayList<>();
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            String field = (String) entry.getKey();
+            if (!field.startsWith(ITEM_PREFIX)) {
+                continue;
+            }
+            Object number = entries.get(NUMBER_PREFIX + field.substring(ITEM_PREFIX.length()));
+            if (number == null) {
+                continue;
+            }
+            ShoppingCart cart = JSON.parseObject((String) entry.getValue(), ShoppingCart.class);
+            cart.setUserId(userId);
+            cart.setNumber(Integer.valueOf((String) number));
+            list.add(cart);
+        }
+        list.sort(Comparator.comparing(ShoppingCart::getCreateTime, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return list;
+    }
+
+    /**
+     * 商品在购物车hash中的key，菜品为 d菜品id:口味，套餐为 s套餐id
+     * @param item
+     * @return
+     */
+    private static String itemKey(ShoppingCart item) {
+        if (item.getDishId() != null) {
+            return "d" + item.getDishId() + ":" + (item.getDishFlavor() == null ? "" : item.getDishFlavor());
+        }
+        return "s" + item.getSetmealId();
+    }
+
+    /**
+     * 每秒把有修改的用户购物车写入数据库，同一批用户在一个事务中先删除再批量写入
+     * 批量写入使用insert ... on duplicate key update，用户锁过期后其他节点并发写入同一商品时不会因唯一索引冲突导致整批失败
+     * 取不到用户锁(其他节点正在写入)或写入失败的用户放回待写入集合，下次重试；事务提交后才删除处理中记录
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void flush() {
+        String claimedAt = String.valueOf(System.currentTimeMillis());
+        List<String> userIds = stringRedisTemplate.execute(CLAIM_SCRIPT, Arrays.asList(DIRTY_KEY, PROCESSING_KEY),
+                String.valueOf(cartProperties.getFlushBatchSize()), claimedAt);
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+
+        List<String> lockedUserIds = new ArrayList<>(userIds.size());
+        List<String> busyUserIds = new ArrayList<>();
+        for (String userId : userIds) {
+            Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(FLUSH_LOCK_PREFIX + userId, "1",
+                    cartProperties.getFlushLockSeconds(), TimeUnit.SECONDS);
+            if (Boolean.TRUE.equals(locked)) {
+                lockedUserIds.add(userId);
+            } else {
+                busyUserIds.add(userId);
+            }
+        }
+        if (!busyUserIds.isEmpty()) {
+            release(claimedAt, true, busyUserIds);
+        }
+        if (lockedUserIds.isEmpty()) {
+            return;
+        }
+
+        boolean flushed = false;
+        try {
+            //读取购物车之后的修改会重新记入待写入集合，下次再写
+            List<Long> flushUserIds = new ArrayList<>(lockedUserIds.size());
+            List<ShoppingCart> carts = new ArrayList<>();
+            for (String userId : lockedUserIds) {
+                Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(CART_PREFIX + userId);
+                if (entries.isEmpty()) {
+                    //已过期，数据库中是最后一次写入的数据
+                    continue;
+                }
+                flushUserIds.add(Long.valueOf(userId));
+                carts.addAll(toList(Long.valueOf(userId), entries));
+            }
+            if (!flushUserIds.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    shoppingcartMapper.deleteByUserIds(flushUserIds);
+                    if (!carts.isEmpty()) {
+                        shoppingcartMapper.upsertBatch(carts);
+                    }
+                });
+            }
+            flushed = true;
+        } catch (Exception e) {
+            log.error("购物车写入数据库失败，稍后重试，用户数：{}", lockedUserIds.size(), e);
+        } finally {
+            //释放失败时处理中记录会超时，由定时任务放回待写入集合
+            release(claimedAt, !flushed, lockedUserIds);
+            List<String> lockKeys = new ArrayList<>(lockedUserIds.size());
+            for (String userId : lockedUserIds) {
+                lockKeys.add(FLUSH_LOCK_PREFIX + userId);
+            }
+            stringRedisTemplate.delete(lockKeys);
+        }
+    }
+
+    /**
+     * 每10秒检查处理中集合，把领取后超过锁定时间仍未完成的用户(节点宕机或卡住)放回待写入集合
+     */
+    @Scheduled(fixedDelay = 10000)
+    public void requeueStale() {
+        long staleBefore = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(cartProperties.getFlushLockSeconds());
+        Long requeued = stringRedisTemplate.execute(REQUEUE_SCRIPT, Arrays.asList(PROCESSING_KEY, DIRTY_KEY),
+                String.valueOf(staleBefore), String.valueOf(cartProperties.getFlushBatchSize()));
+        if (requeued != null && requeued > 0) {
+            log.warn("购物车写入超时，重新放回待写入集合，用户数：{}", requeued);
+        }
+    }
+
+    /**
+     * 结束本次领取
+     * @param claimedAt 领取时间
+     * @param requeue 是否放回待写入集合
+     * @param userIds
+     */
+    private void release(String claimedAt, boolean requeue, List<String> userIds) {
+        List<String> args = new ArrayList<>(userIds.size() + 2);
+        args.add(claimedAt);
+        args.add(requeue ? "1" : "0");
+        args.addAll(userIds);
+        stringRedisTemplate.execute(RELEASE_SCRIPT, Arrays.asList(PROCESSING_KEY, DIRTY_KEY), args.toArray());
+    }
+}
@@ -1,10 +1,17 @@
 package com.sky.config;
 
+import com.sky.cache.MenuCache;
+import com.sky.cache.RedisValueSerializer;
+import com.sky.interceptor.JwtTokenVerifier;
+import com.sky.properties.RedisSerializerProperties;
+import com.sky.websocket.OrderPushServer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
@@ -12,13 +19,51 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
 public class RedisConfiguration {
 
     @Bean
-    public RedisTemplate redisTemplate(RedisConnectionFactory connectionFactory) {
-        log.info("开始创建redis模版对象...");
+    public RedisTemplate redisTemplate(RedisConnectionFactory connectionFactory,
+                                       RedisSerializerProperties redisSerializerProperties) {
+        log.info("开始创建redis模版对象，value序列化方式：{}", redisSerializerProperties.getDefaultType());
+        return createRedisTemplate(connectionFactory, redisSerializerProperties.getDefaultType());
+    };
+
+    /**
+     * 创建指定value序列化方式的redis模版对象
+     * @param connectionFactory
+     * @param serializerType json、smile、jdk
+     * @return
+     */
+    public static RedisTemplate createRedisTemplate(RedisConnectionFactory connectionFactory, String serializerType) {
         RedisTemplate redisTemplate = new RedisTemplate();
         //设置redis的连接工厂对象
         redisTemplate.setConnectionFactory(connectionFactory);
         //设置redis key的序列化器
         redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+        //设置redis value的序列化器，默认的jdk序列化体积大、速度慢，且类结构变化后无法反序列化
+        RedisValueSerializer valueSerializer = RedisValueSerializer.of(serializerType);
+        redisTemplate.setValueSerializer(valueSerializer);
+        redisTemplate.setHashValueSerializer(valueSerializer);
+        redisTemplate.afterPropertiesSet();
         return redisTemplate;
     };
+
+    /**
+     * redis消息监听容器，用于接收菜单缓存的跨节点失效通知、订单推送消息和令牌吊销通知
+     * @param connectionFactory
+     * @param menuCache
+     * @param orderPushServer
+     * @param jwtTokenVerifier
+     * @return
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       MenuCache menuCache,
+                                                                       OrderPushServer orderPushServer,
+                                                                       JwtTokenVerifier jwtTokenVerifier) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(menuCache, new ChannelTopic(MenuCache.CHANNEL));
+        container.addMessageListener(orderPushServer, new ChannelTopic(OrderPushServer.CHANNEL));
+        container.addMessageListener(jwtTokenVerifier, new ChannelTopic(JwtTokenVerifier.CHANNEL));
+        return container;
+    }
 }
@@ -0,0 +1,39 @@
+package com.sky.config;
+
+import com.sky.interceptor.WebSocketHandshakeInterceptor;
+import com.sky.properties.WebSocketProperties;
+import com.sky.websocket.OrderPushServer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * 配置类，注册websocket服务
+ */
+@Configuration
+@EnableWebSocket
+@Slf4j
+public class WebSocketConfiguration implements WebSocketConfigurer {
+
+    @Autowired
+    private OrderPushServer orderPushServer;
+    @Autowired
+    private WebSocketHandshakeInterceptor webSocketHandshakeInterceptor;
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+
+    /**
+     * 管理端通过 /ws/{客户端id} 建立连接，接收来单提醒和客户催单
+     * 握手时校验管理端令牌，只允许配置的来源建立连接
+     * @param registry
+     */
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        log.info("开始注册websocket服务...");
+        registry.addHandler(orderPushServer, "/ws/*")
+                .addInterceptors(webSocketHandshakeInterceptor)
+                .setAllowedOrigins(webSocketProperties.getAllowedOrigins().toArray(new String[0]));
+    }
+}
@@ -1,5 +1,7 @@
 package com.sky.controller.admin;
 
+import com.sky.cache.CatalogSnapshot;
+import com.sky.cache.MenuCache;
 import com.sky.dto.DishDTO;
 import com.sky.dto.DishPageQueryDTO;
 import com.sky.entity.Dish;
@@ -11,11 +13,12 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
+import java.util.stream.Collectors;
 
 
 @RestController
@@ -27,7 +30,9 @@ public class DishController {
     @Autowired
     private DishService dishService;
     @Autowired
-    private RedisTemplate redisTemplate;
+    private MenuCache menuCache;
+    @Autowired
+    private CatalogSnapshot catalogSnapshot;
 
     /**
      * 新增菜品
@@ -70,9 +75,10 @@ public class DishController {
     @DeleteMapping
     public Result deleteByIds(@RequestParam List<Long> ids) {
         log.info("菜品批量删除：{}", ids);
+        //删除前先查出菜品所属的分类，只清理这些分类的缓存
+        List<Long> categoryIds = dishService.getCategoryIds(ids);
         dishService.deleteByIds(ids);
-        //批量删除时，清理缓存情况较为复杂，这里选择将全部的数据都清除
-        cleanCache("dish_*");
+        cleanCache(categoryIds);
         return Result.success();
     }
 
@@ -99,9 +105,13 @@ public class DishController {
     @PutMapping
     @ApiOperation("修改菜品和口味")
     public Result update(@RequestBody DishDTO dishDTO) {
+        //修改了分类的话，修改前后两个分类的缓存都需要清理
+        List<Long> categoryIds = new ArrayList<>(dishService.getCategoryIds(Collections.singletonList(dishDTO.getId())));
         dishService.update(dishDTO);
-        //修改菜品会有特殊情况，如果修改了分类的话，就需要对两个分类下的数据进行处理，这里也是选择将所有缓存数据清空
-        cleanCache("dish_*");
+        if (dishDTO.getCategoryId() != null) {
+            categoryIds.add(dishDTO.getCategoryId());
+        }
+        cleanCache(categoryIds);
         return Result.success();
     }
 
@@ -114,8 +124,12 @@ public class DishController {
     @PostMapping("status/{status}")
     @ApiOperation("菜品起售、停售")
     public Result status(@PathVariable Integer status, Long id){
-        dishService.status(status, id);
-        cleanCache("dish_*");
+        List<Long> setmealCategoryIds = dishService.status(status, id);
+        cleanCache(dishService.getCategoryIds(Collections.singletonList(id)));
+        //停售菜品时包含该菜品的套餐也被停售，对应分类的套餐缓存也需要清理
+        if (!setmealCategoryIds.isEmpty()) {
+            menuCache.evict(setmealCategoryIds.stream().map(categoryId -> "setmeal_" + categoryId).collect(Collectors.toList()));
+        }
         return Result.success();
     }
 
@@ -133,11 +147,20 @@ public class DishController {
 
     /**
      * 在对菜品进行新增、修改、删除时，需要将redis中的数据清除
-     * 否则将造成数据和数据库中的数据不一致
+     * 否则将造成数据和数据库中的数据不一致，同时通知各节点清理本地缓存、更新菜品快照
      * @param pattern
      */
     public void cleanCache(String pattern){
-        Set keys = redisTemplate.keys(pattern);
-        redisTemplate.delete(keys);
+        menuCache.evict(pattern);
+        catalogSnapshot.changed();
+    }
+
+    /**
+     * 清理指定分类的菜品缓存
+     * @param categoryIds
+     */
+    private void cleanCache(List<Long> categoryIds) {
+        menuCache.evict(categoryIds.stream().map(categoryId -> "dish_" + categoryId).collect(Collectors.toList()));
+        catalogSnapshot.changed();
     }
 }
@@ -5,6 +5,7 @@ import com.sky.dto.EmployeeDTO;
 import com.sky.dto.EmployeeLoginDTO;
 import com.sky.dto.EmployeePageQueryDTO;
 import com.sky.entity.Employee;
+import com.sky.interceptor.JwtTokenVerifier;
 import com.sky.properties.JwtProperties;
 import com.sky.result.PageResult;
 import com.sky.result.Result;
@@ -17,6 +18,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -33,6 +36,8 @@ public class EmployeeController {
     private EmployeeService employeeService;
     @Autowired
     private JwtProperties jwtProperties;
+    @Autowired
+    private JwtTokenVerifier jwtTokenVerifier;
 
     /**
      * 员工登录
@@ -66,13 +71,15 @@ public class EmployeeController {
     }
 
     /**
-     * 退出
+     * 退出，吊销当前令牌
      *
+     * @param request
      * @return
      */
     @PostMapping("/logout")
     @ApiOperation(value = "员工登出")
-    public Result<String> logout() {
+    public Result<String> logout(HttpServletRequest request) {
+        jwtTokenVerifier.revokeAdmin(request.getHeader(jwtProperties.getAdminTokenName()));
         return Result.success();
     }
 
@@ -1,5 +1,7 @@
 package com.sky.controller.admin;
 
+import com.sky.cache.CatalogSnapshot;
+import com.sky.cache.MenuCache;
 import com.sky.dto.SetmealDTO;
 import com.sky.dto.SetmealPageQueryDTO;
 import com.sky.result.PageResult;
@@ -10,10 +12,12 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/admin/setmeal")
@@ -23,6 +27,10 @@ public class SetmealController {
 
     @Autowired
     private SetmealService setMealService;
+    @Autowired
+    private MenuCache menuCache;
+    @Autowired
+    private CatalogSnapshot catalogSnapshot;
 
     /**
      * 分页查询套餐
@@ -43,9 +51,9 @@ public class SetmealController {
      */
     @ApiOperation("新增套餐")
     @PostMapping
-    @CacheEvict(cacheNames = "setmealCache", key = "#setmealDTO.categoryId") //key:setmealCache::13
     public Result insert(@RequestBody SetmealDTO setmealDTO){
         setMealService.insert(setmealDTO);
+        cleanCache(Collections.singletonList(setmealDTO.getCategoryId())); //key:setmeal_13
         return Result.success();
     }
 
@@ -56,10 +64,10 @@ public class SetmealController {
      */
     @ApiOperation("修改套餐售卖状态")
     @PostMapping("/status/{status}")
-    @CacheEvict(cacheNames = "setmealCache", allEntries = true)
     public Result status(@PathVariable Integer status, Long id){
         log.info("状态：{}，id：{}", status, id);
         setMealService.status(status, id);
+        cleanCache(setMealService.getCategoryIds(Collections.singletonList(id)));
         return Result.success();
     }
 
@@ -72,10 +80,12 @@ public class SetmealController {
     @DeleteMapping
     //接口类型参数（如 List、Map）必须显式添加 @RequestParam，否则 Spring 无法实例化接口，导致构造函数异常。
     //简单类型 / 数组参数（如 String、Integer[]）可省略 @RequestParam，但集合接口（List、Set）必须通过注解指定参数来源。
-    @CacheEvict(cacheNames = "setmealCache", allEntries = true)
     public Result delete(@RequestParam List<Long> ids){
         log.info("删除套餐:{}", ids);
+        //删除前先查出套餐所属的分类，只清理这些分类的缓存
+        List<Long> categoryIds = setMealService.getCategoryIds(ids);
         setMealService.delete(ids);
+        cleanCache(categoryIds);
         return Result.success();
     }
 
@@ -98,9 +108,23 @@ public class SetmealController {
      */
     @ApiOperation("修改套餐")
     @PutMapping
-    @CacheEvict(cacheNames = "setmealCache", allEntries = true)
     public Result update(@RequestBody SetmealDTO setmealDTO){
+        //修改了分类的话，修改前后两个分类的缓存都需要清理
+        List<Long> categoryIds = new ArrayList<>(setMealService.getCategoryIds(Collections.singletonList(setmealDTO.getId())));
         setMealService.update(setmealDTO);
+        if (setmealDTO.getCategoryId() != null) {
+            categoryIds.add(setmealDTO.getCategoryId());
+        }
+        cleanCache(categoryIds);
         return Result.success();
     }
+
+    /**
+     * 清理指定分类的套餐缓存，同时通知各节点清理本地缓存、更新套餐快照
+     * @param categoryIds
+     */
+    private void cleanCache(List<Long> categoryIds) {
+        menuCache.evict(categoryIds.stream().map(categoryId -> "setmeal_" + categoryId).collect(Collectors.toList()));
+        catalogSnapshot.changed();
+    }
 }
@@ -1,5 +1,6 @@
 package com.sky.controller.user;
 
+import com.sky.cache.MenuCache;
 import com.sky.constant.StatusConstant;
 import com.sky.entity.Dish;
 import com.sky.result.Result;
@@ -9,7 +10,6 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -24,7 +24,7 @@ public class DishController {
     @Autowired
     private DishService dishService;
     @Autowired
-    private RedisTemplate redisTemplate;
+    private MenuCache menuCache;
 
     /**
      * 根据分类id查询菜品
@@ -38,22 +38,13 @@ public class DishController {
         //构造redis中key，规则：dish_分类id
         String key = "dish_" + categoryId;
 
-        //查询redis中是否存在菜品数据
-        //redis存入的是什么数据类型，取出的就是什么数据类型
-        List<DishVO> list = (List<DishVO>) redisTemplate.opsForValue().get(key);
-
-        if (list != null && !list.isEmpty()) {
-            //如果存在，直接返回，无需查询数据库
-            return Result.success(list);
-        }
-
         Dish dish = new Dish();
         dish.setCategoryId(categoryId);
         dish.setStatus(StatusConstant.ENABLE);//查询起售中的菜品
 
-        //如果不存在，查询数据库，将查询到的数据放入到redis中
-        list = dishService.listWithFlavor(dish);
-        redisTemplate.opsForValue().set(key, list);
+        //先查本地缓存，再查redis，都不存在时查询数据库并放入缓存
+        //同一个分类并发未命中时只会查询一次数据库，空分类也会被缓存
+        List<DishVO> list = menuCache.get(key, () -> dishService.listWithFlavor(dish));
 
         return Result.success(list);
     }
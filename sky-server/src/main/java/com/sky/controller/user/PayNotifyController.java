@@ -3,32 +3,36 @@ package com.sky.controller.user;
 import com.alibaba.druid.support.json.JSONUtils;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.sky.order.PayNotifyQueue;
 import com.sky.properties.WeChatProperties;
-import com.sky.service.OrderService;
 import com.wechat.pay.contrib.apache.httpclient.util.AesUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.entity.ContentType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedReader;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 
 /**
  * 支付回调相关接口
+ * 回调只做解密和去重，订单状态的修改交给后台处理，尽快给微信响应
  */
 @RestController
 @RequestMapping("/notify")
 @Slf4j
 public class PayNotifyController {
     @Autowired
-    private OrderService orderService;
+    private PayNotifyQueue payNotifyQueue;
     @Autowired
     private WeChatProperties weChatProperties;
 
+    //解密工具，APIv3密钥不变，创建一次后复用
+    private volatile AesUtil aesUtil;
+
     /**
      * 支付成功回调
      *
@@ -51,8 +55,10 @@ public class PayNotifyController {
         log.info("商户平台订单号：{}", outTradeNo);
         log.info("微信支付交易号：{}", transactionId);
 
-        //业务处理，修改订单状态、来单提醒
-        orderService.paySuccess(outTradeNo);
+        //按交易号去重后放入队列，修改订单状态、来单提醒由后台处理；重复通知直接响应成功
+        if (!payNotifyQueue.accept(outTradeNo, transactionId != null ? transactionId : outTradeNo)) {
+            log.info("重复的支付成功回调：{}", transactionId);
+        }
 
         //给微信响应
         responseToWeixin(response);
@@ -66,16 +72,7 @@ public class PayNotifyController {
      * @throws Exception
      */
     private String readData(HttpServletRequest request) throws Exception {
-        BufferedReader reader = request.getReader();
-        StringBuilder result = new StringBuilder();
-        String line = null;
-        while ((line = reader.readLine()) != null) {
-            if (result.length() > 0) {
-                result.append("\n");
-            }
-            result.append(line);
-        }
-        return result.toString();
+        return StreamUtils.copyToString(request.getInputStream(), StandardCharsets.UTF_8);
     }
 
     /**
@@ -92,15 +89,23 @@ public class PayNotifyController {
         String nonce = resource.getString("nonce");
         String associatedData = resource.getString("associated_data");
 
-        AesUtil aesUtil = new AesUtil(weChatProperties.getApiV3Key().getBytes(StandardCharsets.UTF_8));
         //密文解密
-        String plainText = aesUtil.decryptToString(associatedData.getBytes(StandardCharsets.UTF_8),
+        String plainText = getAesUtil().decryptToString(associatedData.getBytes(StandardCharsets.UTF_8),
                 nonce.getBytes(StandardCharsets.UTF_8),
                 ciphertext);
 
         return plainText;
     }
 
+    private AesUtil getAesUtil() {
+        AesUtil util = aesUtil;
+        if (util == null) {
+            util = new AesUtil(weChatProperties.getApiV3Key().getBytes(StandardCharsets.UTF_8));
+            aesUtil = util;
+        }
+        return util;
+    }
+
     /**
      * 给微信响应
      * @param response
@@ -1,10 +1,7 @@
 package com.sky.interceptor;
 
-import com.sky.constant.JwtClaimsConstant;
 import com.sky.context.BaseContext;
 import com.sky.properties.JwtProperties;
-import com.sky.utils.JwtUtil;
-import io.jsonwebtoken.Claims;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -22,6 +19,8 @@ public class JwtTokenAdminInterceptor implements HandlerInterceptor {
 
     @Autowired
     private JwtProperties jwtProperties;
+    @Autowired
+    private JwtTokenVerifier jwtTokenVerifier;
 
     /**
      * 校验jwt
@@ -40,11 +39,10 @@ public class JwtTokenAdminInterceptor implements HandlerInterceptor {
         try {
             //如果这里在解析的过程中没有抛出异常的话，说明jwt令牌是有效的，并从中将员工id解析出来
             //如果抛出异常则说明jwt令牌无效，将返回401状态码
-            log.info("jwt校验:{}", token);
-            Claims claims = JwtUtil.parseJWT(jwtProperties.getAdminSecretKey(), token);
-            Long empId = Long.valueOf(claims.get(JwtClaimsConstant.EMP_ID).toString());
-            log.info("当前员工id：{}", empId);
-            //将当前用户id存在当前线程中
+            //已校验过的令牌直接使用本地缓存的结果
+            Long empId = jwtTokenVerifier.verifyAdmin(token);
+            log.debug("当前员工id：{}", empId);
+            //将当前员工id存在当前线程中
             BaseContext.setCurrentId(empId);
             //3、通过，放行
             return true;
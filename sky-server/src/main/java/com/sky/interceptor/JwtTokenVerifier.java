@@ -0,0 +1,249 @@
+package com.sky.interceptor;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * jwt令牌校验
+ * 校验通过的令牌按令牌的sha256摘要缓存在本地，缓存时间不超过令牌的过期时间，同一个令牌不用每次请求都重新解析和验签；
+ * 员工退出登录时吊销当前令牌，员工被禁用时吊销之前签发的所有令牌，吊销记录保存在redis中，并通过发布订阅通知所有节点清理本地缓存
+ */
+@Component
+@Slf4j
+public class JwtTokenVerifier implements MessageListener {
+
+    //令牌吊销通知的频道
+    public static final String CHANNEL = "jwt_revoke";
+
+    //吊销的令牌，完整key为 jwt_revoked_令牌摘要
+    private static final String REVOKED_TOKEN_PREFIX = "jwt_revoked_";
+
+    //吊销的员工，完整key为 jwt_revoked_emp_员工id，值为吊销时间(毫秒)，之前签发的令牌都失效
+    private static final String REVOKED_EMP_PREFIX = "jwt_revoked_emp_";
+
+    //通知消息格式 t:令牌摘要 或 e:员工id:吊销时间
+    private static final String TOKEN_MESSAGE = "t:";
+    private static final String EMP_MESSAGE = "e:";
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    @Autowired
+    private JwtProperties jwtProperties;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private Key adminKey;
+    private Key userKey;
+
+    //令牌类型+令牌摘要 -> 校验结果
+    private Cache<String, VerifiedToken> verifiedCache;
+
+    @PostConstruct
+    public void init() {
+        adminKey = JwtUtil.signingKey(jwtProperties.getAdminSecretKey());
+        userKey = JwtUtil.signingKey(jwtProperties.getUserSecretKey());
+
+        long maxCacheNanos = TimeUnit.SECONDS.toNanos(jwtProperties.getVerifiedCacheExpireSeconds());
+        verifiedCache = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getVerifiedCacheMaximumSize())
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+                        long remaining = TimeUnit.MILLISECONDS.toNanos(value.expiration - System.currentTimeMillis());
+                        return Math.max(0, Math.min(remaining, maxCacheNanos));
+                    }
+
+                    public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * 校验管理端令牌
+     * @param token
+     * @return 员工id
+     */
+    public Long verifyAdmin(String token) {
+        return verify(true, token);
+    }
+
+    /**
+     * 校验用户端令牌
+     * @param token
+     * @return 用户id
+     */
+    public Long verifyUser(String token) {
+        return verify(false, token);
+    }
+
+    /**
+     * 校验令牌，本地缓存未命中时验签并检查是否已吊销
+     * @param admin 是否管理端令牌
+     * @param token
+     * @return 员工id或用户id，令牌无效时抛出异常
+     */
+    private Long verify(boolean admin, String token) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("令牌为空");
+        }
+        String digest = digest(token);
+        String cacheKey = (admin ? "a" : "u") + digest;
+        VerifiedToken verifiedToken = verifiedCache.getIfPresent(cacheKey);
+        if (verifiedToken != null && verifiedToken.expiration > System.currentTimeMillis()) {
+            return verifiedToken.id;
+        }
+
+        verifiedToken = parse(admin, token);
+        Boolean revoked = isRevoked(admin, digest, verifiedToken);
+        if (Boolean.TRUE.equals(revoked)) {
+            throw new IllegalStateException("令牌已吊销");
+        }
+        if (revoked != null) {
+            verifiedCache.put(cacheKey, verifiedToken);
+        }
+        return verifiedToken.id;
+    }
+
+    /**
+     * 吊销管理端令牌，用于员工退出登录
+     * @param token
+     */
+    public void revokeAdmin(String token) {
+        VerifiedToken verifiedToken;
+        try {
+            verifiedToken = parse(true, token);
+        } catch (Exception e) {
+            //令牌本身已无效，不需要吊销
+            return;
+        }
+        long ttl = verifiedToken.expiration - System.currentTimeMillis();
+        if (ttl <= 0) {
+            return;
+        }
+        String digest = digest(token);
+        stringRedisTemplate.opsForValue().set(REVOKED_TOKEN_PREFIX + digest, "1", ttl, TimeUnit.MILLISECONDS);
+        stringRedisTemplate.convertAndSend(CHANNEL, TOKEN_MESSAGE + digest);
+    }
+
+    /**
+     * 吊销员工在当前时间之前签发的所有令牌，用于禁用员工账号
+     * @param empId
+     */
+    public void revokeEmployee(Long empId) {
+        long revokedAt = System.currentTimeMillis();
+        //之前签发的令牌最晚在一个有效期后过期
+        stringRedisTemplate.opsForValue().set(REVOKED_EMP_PREFIX + empId, String.valueOf(revokedAt),
+                jwtProperties.getAdminTtl(), TimeUnit.MILLISECONDS);
+        stringRedisTemplate.convertAndSend(CHANNEL, EMP_MESSAGE + empId + ":" + revokedAt);
+    }
+
+    /**
+     * 收到吊销通知，清理本节点缓存的令牌，下次请求时重新校验
+     * @param message
+     * @param pattern
+     */
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (body.startsWith(TOKEN_MESSAGE)) {
+            String digest = body.substring(TOKEN_MESSAGE.length());
+            verifiedCache.invalidate("a" + digest);
+        } else if (body.startsWith(EMP_MESSAGE)) {
+            String[] parts = body.substring(EMP_MESSAGE.length()).split(":");
+            Long empId = Long.valueOf(parts[0]);
+            long revokedAt = Long.parseLong(parts[1]);
+            verifiedCache.asMap().entrySet().removeIf(entry -> entry.getKey().startsWith("a")
+                    && empId.equals(entry.getValue().id) && entry.getValue().issuedAt <= revokedAt);
+        }
+    }
+
+    private VerifiedToken parse(boolean admin, String token) {
+        Claims claims = JwtUtil.parseJWT(admin ? adminKey : userKey, token);
+        Object id = claims.get(admin ? JwtClaimsConstant.EMP_ID : JwtClaimsConstant.USER_ID);
+        Date issuedAt = claims.getIssuedAt();
+        Date expiration = claims.getExpiration();
+        return new VerifiedToken(Long.valueOf(id.toString()),
+                issuedAt == null ? 0 : issuedAt.getTime(),
+                expiration == null ? Long.MAX_VALUE : expiration.getTime());
+    }
+
+    /**
+     * 查询redis中的吊销记录，redis不可用时只记录日志，不影响正常请求，也不缓存校验结果
+     * @return 是否已吊销，redis不可用时返回null
+     */
+    private Boolean isRevoked(boolean admin, String digest, VerifiedToken verifiedToken) {
+        List<String> keys = admin
+                ? Arrays.asList(REVOKED_TOKEN_PREFIX + digest, REVOKED_EMP_PREFIX + verifiedToken.id)
+                : Collections.singletonList(REVOKED_TOKEN_PREFIX + digest);
+        List<String> values;
+        try {
+            values = stringRedisTemplate.opsForValue().multiGet(keys);
+        } catch (Exception e) {
+            log.warn("查询令牌吊销记录失败", e);
+            return null;
+        }
+        if (values == null) {
+            return null;
+        }
+        if (values.get(0) != null) {
+            return true;
+        }
+        //签发时间只精确到秒
+        return admin && values.get(1) != null && verifiedToken.issuedAt <= Long.parseLong(values.get(1));
+    }
+
+    private static String digest(String token) {
+        byte[] hash = SHA256.get().digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    /**
+     * 校验通过的令牌
+     */
+    private static class VerifiedToken {
+
+        private final Long id;
+        //签发时间和过期时间(毫秒)
+        private final long issuedAt;
+        private final long expiration;
+
+        private VerifiedToken(Long id, long issuedAt, long expiration) {
+            this.id = id;
+            this.issuedAt = issuedAt;
+            this.expiration = expiration;
+        }
+    }
+}
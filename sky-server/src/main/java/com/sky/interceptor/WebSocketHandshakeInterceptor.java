@@ -0,0 +1,55 @@
+package com.sky.interceptor;
+
+import com.sky.properties.JwtProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+
+/**
+ * websocket握手时校验管理端jwt令牌，校验不通过拒绝建立连接
+ * 浏览器建立websocket连接时不能设置请求头，令牌也可以通过同名的查询参数传递，例如 /ws/1?token=xxx
+ */
+@Component
+@Slf4j
+public class WebSocketHandshakeInterceptor implements HandshakeInterceptor {
+
+    //握手通过后保存在连接属性中的员工id
+    public static final String EMP_ID_ATTRIBUTE = "empId";
+
+    @Autowired
+    private JwtProperties jwtProperties;
+    @Autowired
+    private JwtTokenVerifier jwtTokenVerifier;
+
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String tokenName = jwtProperties.getAdminTokenName();
+        String token = request.getHeaders().getFirst(tokenName);
+        if (token == null) {
+            token = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst(tokenName);
+        }
+
+        try {
+            //与管理端请求使用相同的校验，包括吊销检查
+            Long empId = jwtTokenVerifier.verifyAdmin(token);
+            attributes.put(EMP_ID_ATTRIBUTE, empId);
+            return true;
+        } catch (Exception ex) {
+            log.info("websocket握手令牌校验失败：{}", request.getRemoteAddress());
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+    }
+
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
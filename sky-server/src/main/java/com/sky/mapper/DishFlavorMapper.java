@@ -39,5 +39,13 @@ public interface DishFlavorMapper {
     @Select("select * from sky_take_out.dish_flavor where dish_id = #{dishId}")
     List<DishFlavor> getByDishId(Long dishId);
 
+    /**
+     * 根据dishIds批量查询口味
+     * 一条in查询代替按菜品逐个查询，结果由调用方按dishId分组
+     * @param dishIds
+     * @return
+     */
+    List<DishFlavor> getByDishIds(List<Long> dishIds);
+
 }
       
\ No newline at end of file
@@ -25,6 +25,14 @@ public interface DishMapper {
     @Select("select count(id) from sky_take_out.dish where category_id = #{categoryId}")
     Integer countByCategoryId(Long categoryId);
 
+    /**
+     * 根据起售停售状态查询菜品数量
+     * @param status
+     * @return
+     */
+    @Select("select count(id) from sky_take_out.dish where status = #{status}")
+    Integer countByStatus(Integer status);
+
     /**
      * 插入菜品
      * @param dish
@@ -83,4 +91,18 @@ public interface DishMapper {
     @Select("select a.* from sky_take_out.dish a left join sky_take_out.setmeal_dish b on a.id = b.dish_id " +
             "where b.setmeal_id = #{setmealId}")
     List<Dish> getBySetmealId(Long setmealId);
+
+    /**
+     * 查询菜品所属的分类id，用于清理对应分类的缓存
+     * @param ids
+     * @return
+     */
+    List<Long> getCategoryIdsByIds(List<Long> ids);
+
+    /**
+     * 查询全部菜品，按id升序
+     * @return
+     */
+    @Select("select * from sky_take_out.dish order by id")
+    List<Dish> listAll();
 }
@@ -23,4 +23,11 @@ public interface OrderDetailMapper {
      */
     @Select("select * from sky_take_out.order_detail where order_id = #{orderId}")
     List<OrderDetail> getByOrderId(Long orderId);
+
+    /**
+     * 根据订单id批量查询订单明细数据
+     * @param orderIds
+     * @return
+     */
+    List<OrderDetail> getByOrderIds(List<Long> orderIds);
 }
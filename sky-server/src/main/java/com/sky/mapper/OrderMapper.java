@@ -5,9 +5,11 @@ import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.entity.Orders;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface OrderMapper {
@@ -18,6 +20,12 @@ public interface OrderMapper {
      */
     void insert(Orders orders);
 
+    /**
+     * 批量插入订单数据，并回填每个订单的主键
+     * @param ordersList
+     */
+    void insertBatch(List<Orders> ordersList);
+
     /**
      * 根据订单号查询订单
      * @param orderNumber
@@ -31,6 +39,16 @@ public interface OrderMapper {
      */
     void update(Orders orders);
 
+    /**
+     * 支付成功，只有待付款的订单才会修改为待接单，重复的支付通知不会重复修改
+     * @param id
+     * @param checkoutTime
+     * @return 实际修改的订单数量
+     */
+    @Update("update sky_take_out.orders set status = 2, pay_status = 1, checkout_time = #{checkoutTime} " +
+            "where id = #{id} and status = 1")
+    int paySuccess(Long id, LocalDateTime checkoutTime);
+
     /**
      * 查询历史订单
      * @param ordersPageQueryDTO
@@ -47,12 +65,21 @@ public interface OrderMapper {
     Orders getById(Long id);
 
     /**
-     * 统计不同状态的订单数量
-     * @param status
-     * @return
+     * 按状态分组统计订单数量，只扫描status索引
+     * @return 每行包含status、number
+     */
+    @Select("select status, count(id) number from sky_take_out.orders group by status")
+    List<Map<String, Object>> countGroupByStatus();
+
+    /**
+     * 按状态分组统计下单时间在[begin, end)内的订单数量和金额
+     * @param begin
+     * @param end
+     * @return 每行包含status、number、amount
      */
-    @Select("select count(*) from sky_take_out.orders where status = #{status}")
-    Integer countstatistics(Integer status);
+    @Select("select status, count(id) number, ifnull(sum(amount), 0) amount from sky_take_out.orders " +
+            "where order_time >= #{begin} and order_time < #{end} group by status")
+    List<Map<String, Object>> countByStatusAndTime(LocalDateTime begin, LocalDateTime end);
 
     /**
      * 处理超时订单，根据订单状态和下单时间来查询
@@ -62,4 +89,46 @@ public interface OrderMapper {
      */
     @Select("select * from sky_take_out.orders where status = #{pendingPayment} and order_time < #{time}")
     List<Orders> selectOrderByStatusAndTime(Integer pendingPayment, LocalDateTime time);
+
+    /**
+     * 根据ids批量取消订单，只会取消仍处于指定状态的订单
+     * @param ids
+     * @param status 订单当前应处于的状态
+     * @param cancelReason
+     * @param cancelTime
+     * @return 实际取消的订单数量
+     */
+    int cancelByIds(List<Long> ids, Integer status, String cancelReason, LocalDateTime cancelTime);
+
+    /**
+     * 按id分页查询指定状态且下单时间早于time的订单，只查询id和下单时间，每次从上一页最后一个id之后继续查询
+     * @param status
+     * @param time
+     * @param lastId 上一页最后一个订单id，第一页传0
+     * @param limit
+     * @return
+     */
+    @Select("select id, order_time from sky_take_out.orders where status = #{status} and order_time < #{time} and id > #{lastId} " +
+            "order by id limit #{limit}")
+    List<Orders> selectOrderTimesByStatusAndTime(Integer status, LocalDateTime time, Long lastId, int limit);
+
+    /**
+     * 按id分页查询指定状态且下单时间早于time的订单id，每次从上一页最后一个id之后继续查询
+     * @param status
+     * @param time
+     * @param lastId 上一页最后一个订单id，第一页传0
+     * @param limit
+     * @return
+     */
+    @Select("select id from sky_take_out.orders where status = #{status} and order_time < #{time} and id > #{lastId} " +
+            "order by id limit #{limit}")
+    List<Long> selectIdsByStatusAndTime(Integer status, LocalDateTime time, Long lastId, int limit);
+
+    /**
+     * 根据ids批量完成派送中的订单
+     * @param ids
+     * @param deliveryTime
+     * @return 实际完成的订单数量
+     */
+    int completeByIds(List<Long> ids, LocalDateTime deliveryTime);
 }
@@ -0,0 +1,54 @@
+package com.sky.mapper;
+
+import com.sky.entity.RefundTask;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface RefundTaskMapper {
+
+    /**
+     * 插入退款任务，退款单号已存在时忽略，保证同一笔退款只记录一次
+     * @param refundTask
+     * @return 实际插入的行数
+     */
+    @Insert("insert ignore into sky_take_out.refund_task (order_id, out_trade_no, out_refund_no, refund_amount, total_amount, " +
+            "status, retry_count, next_retry_time, create_time, update_time) values (#{orderId}, #{outTradeNo}, #{outRefundNo}, " +
+            "#{refundAmount}, #{totalAmount}, #{status}, #{retryCount}, #{nextRetryTime}, #{createTime}, #{updateTime})")
+    int insertIgnore(RefundTask refundTask);
+
+    /**
+     * 查询到达执行时间的待退款任务
+     * @param now
+     * @param limit
+     * @return
+     */
+    @Select("select * from sky_take_out.refund_task where status = 0 and next_retry_time <= #{now} " +
+            "order by next_retry_time limit #{limit}")
+    List<RefundTask> listDue(LocalDateTime now, int limit);
+
+    /**
+     * 领取退款任务，把下次执行时间推迟到leaseUntil，执行线程异常退出时任务到期后会被重新领取
+     * 多个节点同时领取同一个任务时只有一个能成功
+     * @param id
+     * @param nextRetryTime 查询时的下次执行时间
+     * @param leaseUntil
+     * @return 是否领取成功
+     */
+    @Update("update sky_take_out.refund_task set next_retry_time = #{leaseUntil} " +
+            "where id = #{id} and status = 0 and next_retry_time = #{nextRetryTime}")
+    int claim(Long id, LocalDateTime nextRetryTime, LocalDateTime leaseUntil);
+
+    /**
+     * 更新退款结果
+     * @param refundTask
+     */
+    @Update("update sky_take_out.refund_task set status = #{status}, retry_count = #{retryCount}, " +
+            "next_retry_time = #{nextRetryTime}, last_error = #{lastError}, update_time = #{updateTime} where id = #{id}")
+    void update(RefundTask refundTask);
+}
@@ -0,0 +1,105 @@
+package com.sky.mapper;
+
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.dto.OrderExportDTO;
+import com.sky.entity.DailyReport;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface ReportMapper {
+
+    /**
+     * 查询日期范围内的每日汇总数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select * from sky_take_out.daily_report where report_date between #{begin} and #{end} order by report_date")
+    List<DailyReport> listByDate(LocalDate begin, LocalDate end);
+
+    /**
+     * 查询日期范围内销量排名前10的商品
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select name, sum(number) number from sky_take_out.daily_sales where report_date between #{begin} and #{end} " +
+            "group by name order by number desc limit 10")
+    List<GoodsSalesDTO> top10(LocalDate begin, LocalDate end);
+
+    /**
+     * 增加某天的订单数
+     * @param date
+     * @param count
+     */
+    @Insert("insert into sky_take_out.daily_report (report_date, order_count) values (#{date}, #{count}) " +
+            "on duplicate key update order_count = order_count + values(order_count)")
+    void addOrderCount(LocalDate date, int count);
+
+    /**
+     * 增加某天的新增用户数
+     * @param date
+     * @param count
+     */
+    @Insert("insert into sky_take_out.daily_report (report_date, new_users) values (#{date}, #{count}) " +
+            "on duplicate key update new_users = new_users + values(new_users)")
+    void addNewUsers(LocalDate date, int count);
+
+    /**
+     * 订单完成后，按下单日期累加营业额和有效订单数
+     * @param orderIds
+     */
+    void addTurnoverByOrderIds(List<Long> orderIds);
+
+    /**
+     * 订单完成后，按下单日期累加商品销量
+     * @param orderIds
+     */
+    void addSalesByOrderIds(List<Long> orderIds);
+
+    /**
+     * 根据订单表和用户表重算某一天的汇总数据
+     * @param date
+     * @param begin 当天开始时间
+     * @param end 第二天开始时间
+     */
+    void rebuildReport(LocalDate date, LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 删除某一天的商品销量数据
+     * @param date
+     */
+    @Delete("delete from sky_take_out.daily_sales where report_date = #{date}")
+    void deleteSales(LocalDate date);
+
+    /**
+     * 根据订单明细重算某一天的商品销量
+     * @param date
+     * @param begin 当天开始时间
+     * @param end 第二天开始时间
+     */
+    void rebuildSales(LocalDate date, LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 流式查询下单时间在[begin, end)内的订单明细，每次只从数据库读取一行，用于导出大量数据
+     * 需要在事务中遍历
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select o.number, o.order_time, o.status, o.consignee, o.phone, o.address, o.amount order_amount, " +
+            "od.name, od.dish_flavor, od.number quantity, od.amount " +
+            "from sky_take_out.orders o join sky_take_out.order_detail od on o.id = od.order_id " +
+            "where o.order_time >= #{begin} and o.order_time < #{end} order by o.id, od.id")
+    @Options(fetchSize = Integer.MIN_VALUE)
+    Cursor<OrderExportDTO> cursorOrderDetails(LocalDateTime begin, LocalDateTime end);
+}
@@ -24,6 +24,14 @@ public interface SetmealMapper {
     @Select("select count(id) from sky_take_out.setmeal where category_id = #{categoryId}")
     Integer countByCategoryId(Long id);
 
+    /**
+     * 根据起售停售状态查询套餐数量
+     * @param status
+     * @return
+     */
+    @Select("select count(id) from sky_take_out.setmeal where status = #{status}")
+    Integer countByStatus(Integer status);
+
     /**
      * 根据id修改套餐，统一修改方法
      * @param setmeal
@@ -74,4 +82,18 @@ public interface SetmealMapper {
             "from sky_take_out.setmeal_dish sd left join sky_take_out.dish d on sd.dish_id = d.id " +
             "where sd.setmeal_id = #{setmealId}")
     List<DishItemVO> getDishItemBySetmealId(Long setmealId);
+
+    /**
+     * 查询套餐所属的分类id，用于清理对应分类的缓存
+     * @param ids
+     * @return
+     */
+    List<Long> getCategoryIdsByIds(List<Long> ids);
+
+    /**
+     * 查询全部套餐，按id升序
+     * @return
+     */
+    @Select("select * from sky_take_out.setmeal order by id")
+    List<Setmeal> listAll();
 }
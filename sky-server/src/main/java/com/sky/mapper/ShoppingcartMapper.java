@@ -67,4 +67,22 @@ public interface ShoppingcartMapper {
      * @param shoppingCartList
      */
     void insertBatch(List<ShoppingCart> shoppingCartList);
+
+    /**
+     * 根据ids批量删除购物车数据
+     * @param ids
+     */
+    void deleteByIds(List<Long> ids);
+
+    /**
+     * 根据用户id批量删除购物车数据
+     * @param userIds
+     */
+    void deleteByUserIds(List<Long> userIds);
+
+    /**
+     * 批量写入购物车数据，同一用户同一商品已存在时更新为新的数量
+     * @param shoppingCartList
+     */
+    void upsertBatch(List<ShoppingCart> shoppingCartList);
 }
@@ -3,6 +3,8 @@ import com.sky.entity.User;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 
+import java.time.LocalDateTime;
+
 @Mapper
 public interface UserMapper {
 
@@ -28,4 +30,21 @@ public interface UserMapper {
      * @return
      */
     Long insert(User user);
+
+    /**
+     * 统计注册时间在[begin, end)内的用户数量
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select count(id) from sky_take_out.user where create_time >= #{begin} and create_time < #{end}")
+    Integer countByCreateTime(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 统计注册时间早于time的用户数量
+     * @param time
+     * @return
+     */
+    @Select("select count(id) from sky_take_out.user where create_time < #{time}")
+    Integer countByCreateTimeBefore(LocalDateTime time);
 }
@@ -0,0 +1,176 @@
+package com.sky.order;
+
+import com.sky.constant.MessageConstant;
+import com.sky.exception.OrderBusinessException;
+import com.sky.properties.OrderNumberProperties;
+import com.sky.utils.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单号生成器
+ * 基于雪花算法，节点id优先使用配置，未配置时通过redis租用，保证多个节点生成的订单号不重复；
+ * 租用的节点id在本地记录租约的安全期限，进程停顿(长时间GC、与redis断开)超过期限后租约可能已被其他节点占用，
+ * 此时生成的订单号作废，确认或重新租用节点id后再生成
+ */
+@Component
+@Slf4j
+public class OrderNumberGenerator {
+
+    //节点id租约的key前缀，完整key为 order_number_node_节点id
+    private static final String NODE_KEY_PREFIX = "order_number_node_";
+
+    //只有租约的持有者才能续约或释放
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('expire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderNumberProperties orderNumberProperties;
+
+    //当前节点的租约标识
+    private final String owner = UUID.randomUUID().toString();
+
+    //当前使用的生成器和租约期限，整体替换，保证生成器和期限总是对应
+    private volatile Lease lease;
+
+    //是否通过redis租用的节点id
+    private boolean leased;
+
+    @PostConstruct
+    public void init() {
+        long nodeId = orderNumberProperties.getNodeId();
+        if (nodeId >= 0) {
+            lease = new Lease(new SnowflakeIdGenerator(nodeId), Long.MAX_VALUE);
+            log.info("订单号生成器使用配置的节点id：{}", nodeId);
+            return;
+        }
+        leased = true;
+        lease = leaseNodeId();
+    }
+
+    /**
+     * 生成订单号
+     * @return
+     */
+    public String nextNumber() {
+        Lease current = lease;
+        long id = current.generator.nextId();
+        //生成之后再检查租约，保证订单号的时间戳在租约有效期内
+        while (System.currentTimeMillis() >= current.deadline) {
+            current = ensureLease();
+            id = current.generator.nextId();
+        }
+        return String.valueOf(id);
+    }
+
+    /**
+     * 租约已超过安全期限，续约或重新租用后返回新的租约
+     * @return
+     */
+    private synchronized Lease ensureLease() {
+        Lease current = lease;
+        if (System.currentTimeMillis() < current.deadline) {
+            //其他线程已经续约
+            return current;
+        }
+        log.warn("订单号节点id租约超过安全期限，续约后再生成：{}", current.generator.getNodeId());
+        try {
+            renew();
+        } catch (RuntimeException e) {
+            log.error("订单号节点id续约失败", e);
+            throw new OrderBusinessException(MessageConstant.ORDER_BUSY);
+        }
+        return lease;
+    }
+
+    /**
+     * 从redis中租用一个未被占用的节点id
+     * @return
+     */
+    private Lease leaseNodeId() {
+        for (long nodeId = 0; nodeId <= SnowflakeIdGenerator.MAX_NODE_ID; nodeId++) {
+            long requestedAt = System.currentTimeMillis();
+            Boolean success = stringRedisTemplate.opsForValue().setIfAbsent(NODE_KEY_PREFIX + nodeId, owner,
+                    orderNumberProperties.getLeaseSeconds(), TimeUnit.SECONDS);
+            if (Boolean.TRUE.equals(success)) {
+                log.info("订单号生成器租用节点id：{}", nodeId);
+                return new Lease(new SnowflakeIdGenerator(nodeId), deadline(requestedAt));
+            }
+        }
+        throw new IllegalStateException("没有可用的订单号节点id");
+    }
+
+    /**
+     * 定时续约节点id，续约失败(租约已过期被其他节点占用)时重新租用
+     */
+    @Scheduled(fixedDelay = 10000)
+    public void renewLease() {
+        if (!leased) {
+            return;
+        }
+        renew();
+    }
+
+    private synchronized void renew() {
+        SnowflakeIdGenerator generator = lease.generator;
+        long requestedAt = System.currentTimeMillis();
+        Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT,
+                Collections.singletonList(NODE_KEY_PREFIX + generator.getNodeId()),
+                owner, String.valueOf(orderNumberProperties.getLeaseSeconds()));
+        if (renewed == null || renewed == 0) {
+            log.error("订单号节点id租约丢失，重新租用：{}", generator.getNodeId());
+            lease = leaseNodeId();
+            return;
+        }
+        lease = new Lease(generator, deadline(requestedAt));
+    }
+
+    /**
+     * redis从收到请求时开始计算租约，按发起请求的时间计算的期限不会晚于实际期限，再预留安全时间
+     * @param requestedAt
+     * @return
+     */
+    private long deadline(long requestedAt) {
+        return requestedAt + TimeUnit.SECONDS.toMillis(orderNumberProperties.getLeaseSeconds()
+                - orderNumberProperties.getLeaseSafetySeconds());
+    }
+
+    @PreDestroy
+    public void releaseLease() {
+        if (leased) {
+            stringRedisTemplate.execute(RELEASE_SCRIPT,
+                    Collections.singletonList(NODE_KEY_PREFIX + lease.generator.getNodeId()), owner);
+        }
+    }
+
+    /**
+     * 节点id租约
+     */
+    private static class Lease {
+
+        private final SnowflakeIdGenerator generator;
+        //安全期限(毫秒)，超过后不能再使用该生成器
+        private final long deadline;
+
+        private Lease(SnowflakeIdGenerator generator, long deadline) {
+            this.generator = generator;
+            this.deadline = deadline;
+        }
+    }
+}
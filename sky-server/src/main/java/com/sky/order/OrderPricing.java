@@ -0,0 +1,99 @@
+package com.sky.order;
+
+import com.sky.cache.CatalogSnapshot;
+import com.sky.constant.MessageConstant;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.exception.OrderBusinessException;
+import com.sky.properties.PricingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 订单计价
+ * 下单时按当前的菜品、套餐价格和口味加价重新计算每个明细的单价、打包费和订单总金额，不使用客户端和购物车中的金额；
+ * 价格从菜品套餐快照中读取，全部按分计算，不查询数据库
+ */
+@Component
+@Slf4j
+public class OrderPricing {
+
+    @Autowired
+    private CatalogSnapshot catalogSnapshot;
+    @Autowired
+    private PricingProperties pricingProperties;
+
+    //口味选项 -> 加价(分)
+    private Map<String, Long> flavorSurcharges;
+
+    private long deliveryFee;
+
+    @PostConstruct
+    public void init() {
+        Map<String, Long> surcharges = new HashMap<>();
+        pricingProperties.getFlavorSurcharges().forEach((flavor, surcharge) -> surcharges.put(flavor, toCents(surcharge)));
+        flavorSurcharges = Collections.unmodifiableMap(surcharges);
+        deliveryFee = toCents(pricingProperties.getDeliveryFee());
+    }
+
+    /**
+     * 计算订单金额，设置每个明细的单价以及订单的打包费和总金额
+     * 总金额 = 明细单价 * 份数之和 + 打包费 + 配送费
+     * @param orders
+     * @param orderDetails
+     */
+    public void price(Orders orders, List<OrderDetail> orderDetails) {
+        long goodsAmount = 0;
+        int itemCount = 0;
+        for (OrderDetail orderDetail : orderDetails) {
+            long unitPrice = unitPrice(orderDetail);
+            orderDetail.setAmount(BigDecimal.valueOf(unitPrice, 2));
+            goodsAmount += unitPrice * orderDetail.getNumber();
+            itemCount += orderDetail.getNumber();
+        }
+        int packAmount = itemCount * pricingProperties.getPackFee();
+        long amount = goodsAmount + packAmount * 100L + deliveryFee;
+
+        orders.setPackAmount(packAmount);
+        orders.setAmount(BigDecimal.valueOf(amount, 2));
+    }
+
+    /**
+     * 明细的单价(分)，菜品价格加上所选口味的加价
+     * @param orderDetail
+     * @return
+     */
+    private long unitPrice(OrderDetail orderDetail) {
+        long price = orderDetail.getDishId() != null
+                ? catalogSnapshot.getDishPrice(orderDetail.getDishId())
+                : catalogSnapshot.getSetmealPrice(orderDetail.getSetmealId());
+        if (price < 0) {
+            log.info("下单商品不存在或已停售：{}", orderDetail.getName());
+            throw new OrderBusinessException(MessageConstant.ORDER_ITEM_UNAVAILABLE);
+        }
+        String dishFlavor = orderDetail.getDishFlavor();
+        if (!flavorSurcharges.isEmpty() && dishFlavor != null && !dishFlavor.isEmpty()) {
+            //口味为多个选项用逗号拼接，例如 微辣,少冰
+            for (String flavor : dishFlavor.split(",")) {
+                Long surcharge = flavorSurcharges.get(flavor.trim());
+                if (surcharge != null) {
+                    price += surcharge;
+                }
+            }
+        }
+        return price;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+}
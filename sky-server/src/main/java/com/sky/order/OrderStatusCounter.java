@@ -0,0 +1,92 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 各状态订单数量计数器
+ * 订单状态变化时增量修改本地计数，在事务中修改时等事务提交后才生效，回滚的修改不计数；查询时直接读内存；
+ * 其他节点的状态变化以及增量与数据库之间的偏差，由定时对账(一条group by查询)修正
+ */
+@Component
+@Slf4j
+public class OrderStatusCounter {
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    //下标为订单状态 1待付款 2待接单 3已接单 4派送中 5已完成 6已取消
+    private final AtomicLongArray counts = new AtomicLongArray(Orders.CANCELLED + 1);
+
+    private volatile boolean loaded;
+
+    /**
+     * 订单状态变化后修改计数
+     * @param from 原状态，新订单传null
+     * @param to 新状态
+     * @param count 订单数量
+     */
+    public void changed(Integer from, Integer to, int count) {
+        if (count == 0 || to.equals(from)) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                public void afterCommit() {
+                    apply(from, to, count);
+                }
+            });
+            return;
+        }
+        apply(from, to, count);
+    }
+
+    private void apply(Integer from, Integer to, int count) {
+        if (from != null) {
+            counts.addAndGet(from, -count);
+        }
+        counts.addAndGet(to, count);
+    }
+
+    /**
+     * 查询某个状态的订单数量
+     * @param status
+     * @return
+     */
+    public int get(Integer status) {
+        if (!loaded) {
+            reconcile();
+        }
+        return (int) Math.max(counts.get(status), 0);
+    }
+
+    /**
+     * 每10秒按数据库对账一次，直接以数据库的计数为准
+     * 查询期间提交的状态变化可能被覆盖或重复计数，偏差保留到下一次对账
+     */
+    @Scheduled(fixedDelay = 10000)
+    public synchronized void reconcile() {
+        Map<Integer, Long> dbCounts = new HashMap<>();
+        for (Map<String, Object> row : orderMapper.countGroupByStatus()) {
+            dbCounts.put(((Number) row.get("status")).intValue(), ((Number) row.get("number")).longValue());
+        }
+        for (int status = Orders.PENDING_PAYMENT; status <= Orders.CANCELLED; status++) {
+            long dbCount = dbCounts.getOrDefault(status, 0L);
+            long oldCount = counts.getAndSet(status, dbCount);
+            if (loaded && oldCount != dbCount) {
+                log.debug("订单状态计数对账修正，状态：{}，{} -> {}", status, oldCount, dbCount);
+            }
+        }
+        loaded = true;
+    }
+}
@@ -0,0 +1,297 @@
+package com.sky.order;
+
+import com.sky.constant.MessageConstant;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderSubmitProperties;
+import com.sky.service.ReportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 下单写入流水线
+ * 下单请求在业务线程中完成校验和组装，再交给写入线程；写入线程把同一时刻的多个订单合并为一个事务，
+ * 用多行insert批量写入订单和订单明细，写入成功后再唤醒对应的下单请求；
+ * 等待超时的下单请求放弃订单后写入线程不再写入，写入线程已开始写入时下单请求继续等待写入结果，避免返回失败后订单仍被写入；
+ * 每日订单数不在写入事务中累加，提交后先在内存中按日期汇总，空闲时或每秒一次写入报表，避免每批事务都持有当天报表行的锁
+ */
+@Component
+@Slf4j
+public class OrderSubmitPipeline {
+
+    //写入线程空闲时检查是否停止的间隔
+    private static final long POLL_MILLIS = 100;
+
+    //持续写入时累加每日订单数的间隔
+    private static final long REPORT_FLUSH_MILLIS = 1000;
+
+    //等待写入的订单状态：排队中、写入中、下单请求已放弃
+    private static final int QUEUED = 0;
+    private static final int WRITING = 1;
+    private static final int ABANDONED = 2;
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private OrderSubmitProperties orderSubmitProperties;
+    @Autowired
+    private ReportService reportService;
+
+    private BlockingQueue<PendingOrder> queue;
+
+    private Thread writer;
+
+    private volatile boolean running = true;
+
+    //已提交但还未累加到报表的每日订单数，只由写入线程访问
+    private final Map<LocalDate, Integer> reportCounts = new HashMap<>();
+
+    private long lastReportFlushMillis;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(orderSubmitProperties.getQueueCapacity());
+        writer = new Thread(this::writeLoop, "order-submit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 停止写入线程，等待正在写入的批次完成，队列中剩余的订单返回失败
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(orderSubmitProperties.getWaitTimeoutMillis());
+        if (writer.isAlive()) {
+            writer.interrupt();
+        }
+        List<PendingOrder> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (PendingOrder pendingOrder : remaining) {
+            pendingOrder.state.compareAndSet(QUEUED, ABANDONED);
+            pendingOrder.future.completeExceptionally(new OrderBusinessException(MessageConstant.ORDER_BUSY));
+        }
+        if (!remaining.isEmpty()) {
+            log.warn("停止时未写入的订单数量：{}", remaining.size());
+        }
+    }
+
+    /**
+     * 提交订单，阻塞到订单写入数据库后返回，返回时订单已回填主键
+     * @param orders 订单
+     * @param orderDetails 订单明细，orderId由写入线程设置
+     * @return
+     */
+    public Orders submit(Orders orders, List<OrderDetail> orderDetails) {
+        PendingOrder pendingOrder = new PendingOrder(orders, orderDetails);
+        if (!running || !queue.offer(pendingOrder)) {
+            throw new OrderBusinessException(MessageConstant.ORDER_BUSY);
+        }
+        try {
+            pendingOrder.future.get(orderSubmitProperties.getWaitTimeoutMillis(), TimeUnit.MILLISECONDS);
+            return orders;
+        } catch (ExecutionException e) {
+            throw failure(e.getCause());
+        } catch (TimeoutException e) {
+            log.error("订单写入超时：{}", orders.getNumber());
+            return abandonOrAwait(pendingOrder);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return abandonOrAwait(pendingOrder);
+        }
+    }
+
+    /**
+     * 等待超时或被中断时放弃订单；写入线程已经开始写入时不能放弃，继续等待写入结果
+     * @param pendingOrder
+     * @return
+     */
+    private Orders abandonOrAwait(PendingOrder pendingOrder) {
+        if (pendingOrder.state.compareAndSet(QUEUED, ABANDONED)) {
+            throw new OrderBusinessException(MessageConstant.ORDER_BUSY);
+        }
+        try {
+            //写入线程在写入结束后一定会设置结果
+            pendingOrder.future.join();
+            return pendingOrder.orders;
+        } catch (CompletionException e) {
+            throw failure(e.getCause());
+        }
+    }
+
+    private static RuntimeException failure(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new OrderBusinessException(MessageConstant.ORDER_BUSY);
+    }
+
+    /**
+     * 写入线程：等待第一个订单，再把队列中已到达的订单一并取出，有订单时不会额外等待
+     * 队列空闲时，或持续写入超过1秒时，把汇总的每日订单数写入报表；停止前写入剩余的部分
+     */
+    private void writeLoop() {
+        List<PendingOrder> batch = new ArrayList<>(orderSubmitProperties.getBatchSize());
+        while (running) {
+            try {
+                PendingOrder first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    flushReportCounts();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, orderSubmitProperties.getBatchSize() - 1);
+                writeBatch(batch);
+                if (System.currentTimeMillis() - lastReportFlushMillis >= REPORT_FLUSH_MILLIS) {
+                    flushReportCounts();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("订单批量写入异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+        flushReportCounts();
+    }
+
+    /**
+     * 按日期累加已提交订单的订单数，每个日期一条upsert，不在订单的写入事务中执行
+     * 失败的日期保留在内存中，下次再写入
+     */
+    private void flushReportCounts() {
+        lastReportFlushMillis = System.currentTimeMillis();
+        Iterator<Map.Entry<LocalDate, Integer>> iterator = reportCounts.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<LocalDate, Integer> entry = iterator.next();
+            try {
+                reportService.ordersSubmitted(entry.getKey(), entry.getValue());
+                iterator.remove();
+            } catch (Exception e) {
+                log.error("累加每日订单数失败，稍后重试，日期：{}，数量：{}", entry.getKey(), entry.getValue(), e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 订单提交后，按下单日期汇总订单数
+     * @param batch
+     */
+    private void committed(List<PendingOrder> batch) {
+        for (PendingOrder pendingOrder : batch) {
+            reportCounts.merge(pendingOrder.orders.getOrderTime().toLocalDate(), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * 在一个事务中批量写入，失败时逐个重试，避免一个异常订单导致整批失败
+     * 只写入仍在排队的订单，已放弃的订单跳过；发生任何错误时本批未完成的订单都返回失败，不会让下单请求一直等待
+     * @param batch
+     */
+    private void writeBatch(List<PendingOrder> batch) {
+        batch.removeIf(pendingOrder -> !pendingOrder.state.compareAndSet(QUEUED, WRITING));
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            write(batch);
+        } catch (Throwable e) {
+            log.error("订单批量写入错误，本批数量：{}", batch.size(), e);
+            for (PendingOrder pendingOrder : batch) {
+                pendingOrder.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void write(List<PendingOrder> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(batch));
+            committed(batch);
+            for (PendingOrder pendingOrder : batch) {
+                pendingOrder.future.complete(null);
+            }
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            log.warn("订单批量写入失败，逐个重试，本批数量：{}", batch.size(), e);
+            for (PendingOrder pendingOrder : batch) {
+                pendingOrder.orders.setId(null);
+                try {
+                    List<PendingOrder> single = Collections.singletonList(pendingOrder);
+                    transactionTemplate.executeWithoutResult(status -> insert(single));
+                    committed(single);
+                    pendingOrder.future.complete(null);
+                } catch (RuntimeException ex) {
+                    pendingOrder.future.completeExceptionally(ex);
+                }
+            }
+        }
+    }
+
+    private void insert(List<PendingOrder> batch) {
+        List<Orders> ordersList = new ArrayList<>(batch.size());
+        for (PendingOrder pendingOrder : batch) {
+            ordersList.add(pendingOrder.orders);
+        }
+        //多行insert，回填各订单主键
+        orderMapper.insertBatch(ordersList);
+
+        List<OrderDetail> orderDetailList = new ArrayList<>();
+        for (PendingOrder pendingOrder : batch) {
+            Long orderId = pendingOrder.orders.getId();
+            for (OrderDetail orderDetail : pendingOrder.orderDetails) {
+                orderDetail.setOrderId(orderId);
+                orderDetailList.add(orderDetail);
+            }
+        }
+        orderDetailMapper.insertBatch(orderDetailList);
+    }
+
+    /**
+     * 等待写入的订单
+     */
+    private static class PendingOrder {
+        private final Orders orders;
+        private final List<OrderDetail> orderDetails;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+        private PendingOrder(Orders orders, List<OrderDetail> orderDetails) {
+            this.orders = orders;
+            this.orderDetails = orderDetails;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.WorkspaceService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 待支付订单超时延时队列
+ * 下单时以订单到期时间为score放入redis zset，每秒取出到期的订单批量取消；
+ * 取出到期订单使用lua脚本原子地查询并删除，多个节点同时轮询也不会重复处理
+ */
+@Component
+@Slf4j
+public class OrderTimeoutQueue {
+
+    //待支付订单的超时时间(分钟)
+    public static final long PAY_TIMEOUT_MINUTES = 15;
+
+    public static final String CANCEL_REASON = "订单超时，自动取消";
+
+    private static final String KEY = "order_timeout";
+
+    //每次最多取出的到期订单数
+    private static final int BATCH_SIZE = 500;
+
+    //返回 id1, 到期时间1, id2, 到期时间2 ...
+    private static final DefaultRedisScript<List> POLL_SCRIPT = new DefaultRedisScript<>(
+            "local items = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'withscores', 'limit', 0, ARGV[2]) " +
+            "for i = 1, #items, 2 do redis.call('zrem', KEYS[1], items[i]) end " +
+            "return items",
+            List.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private WorkspaceService workspaceService;
+    @Autowired
+    private OrderStatusCounter orderStatusCounter;
+
+    /**
+     * 加入延时队列，到期时间为下单时间加上超时时间
+     * 加入失败不影响下单，由定时任务兜底取消
+     * @param orderId
+     * @param orderTime
+     */
+    public void add(Long orderId, LocalDateTime orderTime) {
+        long deadline = orderTime.plusMinutes(PAY_TIMEOUT_MINUTES)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        try {
+            stringRedisTemplate.opsForZSet().add(KEY, String.valueOf(orderId), deadline);
+        } catch (Exception e) {
+            log.error("订单加入超时队列失败：{}", orderId, e);
+        }
+    }
+
+    /**
+     * 订单已支付，从延时队列中移除
+     * @param orderId
+     */
+    public void remove(Long orderId) {
+        try {
+            stringRedisTemplate.opsForZSet().remove(KEY, String.valueOf(orderId));
+        } catch (Exception e) {
+            log.error("订单移出超时队列失败：{}", orderId, e);
+        }
+    }
+
+    /**
+     * 每秒取出到期的订单，一条update批量取消，只会取消仍处于待付款状态的订单
+     * 按下单日期分组取消(通常只有一组)，以便把取消数量准确地计入对应日期的工作台数据
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void processDueOrders() {
+        List<String> items;
+        do {
+            items = stringRedisTemplate.execute(POLL_SCRIPT, Collections.singletonList(KEY),
+                    String.valueOf(System.currentTimeMillis()), String.valueOf(BATCH_SIZE));
+            if (items == null || items.isEmpty()) {
+                return;
+            }
+            Map<LocalDate, List<Long>> orderIdMap = new HashMap<>();
+            for (int i = 0; i < items.size(); i += 2) {
+                long deadline = (long) Double.parseDouble(items.get(i + 1));
+                LocalDate orderDate = Instant.ofEpochMilli(deadline).atZone(ZoneId.systemDefault())
+                        .minusMinutes(PAY_TIMEOUT_MINUTES).toLocalDate();
+                orderIdMap.computeIfAbsent(orderDate, d -> new ArrayList<>()).add(Long.valueOf(items.get(i)));
+            }
+            orderIdMap.forEach((orderDate, orderIds) -> {
+                int count = orderMapper.cancelByIds(orderIds, Orders.PENDING_PAYMENT, CANCEL_REASON, LocalDateTime.now());
+                workspaceService.ordersCancelled(orderDate, Orders.PENDING_PAYMENT, count);
+                orderStatusCounter.changed(Orders.PENDING_PAYMENT, Orders.CANCELLED, count);
+                log.info("超时订单自动取消，到期：{}，取消：{}", orderIds.size(), count);
+            });
+        } while (items.size() == BATCH_SIZE * 2);
+    }
+}
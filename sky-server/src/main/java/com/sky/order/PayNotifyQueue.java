@@ -0,0 +1,126 @@
+package com.sky.order;
+
+import com.sky.service.OrderService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 支付成功通知队列
+ * 回调接口按微信支付交易号去重后把订单号放入redis zset就可以响应微信，修改订单状态、来单提醒交给后台线程处理；
+ * 处理成功后从zset中删除，处理失败或节点宕机时留在zset中，由定时任务重新处理
+ */
+@Component
+@Slf4j
+public class PayNotifyQueue {
+
+    private static final String KEY = "pay_notify";
+
+    //交易号去重的key前缀，完整key为 pay_notify_交易号
+    private static final String DEDUPE_PREFIX = "pay_notify_";
+
+    //交易号去重的保留时间，微信支付在24小时内重试通知
+    private static final long DEDUPE_SECONDS = TimeUnit.DAYS.toSeconds(2);
+
+    //超过该时间(毫秒)仍未处理完成的通知会被重新处理
+    private static final long RETRY_AFTER_MSEC = 30 * 1000;
+
+    private static final int WORKER_THREADS = 2;
+
+    private static final int BATCH_SIZE = 100;
+
+    //第一次收到的交易号才放入队列，返回1；重复通知返回0
+    private static final DefaultRedisScript<Long> ACCEPT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('set', KEYS[1], '1', 'nx', 'ex', ARGV[1]) then " +
+            "redis.call('zadd', KEYS[2], ARGV[2], ARGV[3]) return 1 end " +
+            "return 0",
+            Long.class);
+
+    //取出超时未处理完成的通知，并把时间改为当前时间，避免多个节点同时重新处理
+    private static final DefaultRedisScript<List> RETRY_SCRIPT = new DefaultRedisScript<>(
+            "local items = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'limit', 0, ARGV[2]) " +
+            "for i = 1, #items do redis.call('zadd', KEYS[1], ARGV[3], items[i]) end " +
+            "return items",
+            List.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderService orderService;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(WORKER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "pay-notify-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 接收支付成功通知
+     * @param outTradeNo 商户订单号
+     * @param transactionId 微信支付交易号
+     * @return 是否第一次收到该交易的通知
+     */
+    public boolean accept(String outTradeNo, String transactionId) {
+        Long accepted = stringRedisTemplate.execute(ACCEPT_SCRIPT, Arrays.asList(DEDUPE_PREFIX + transactionId, KEY),
+                String.valueOf(DEDUPE_SECONDS), String.valueOf(System.currentTimeMillis()), outTradeNo);
+        if (accepted == null || accepted == 0) {
+            return false;
+        }
+        executor.execute(() -> process(outTradeNo));
+        return true;
+    }
+
+    /**
+     * 修改订单状态并来单提醒，成功后从队列中删除
+     * @param outTradeNo
+     */
+    private void process(String outTradeNo) {
+        try {
+            orderService.paySuccess(outTradeNo);
+            stringRedisTemplate.opsForZSet().remove(KEY, outTradeNo);
+        } catch (Exception e) {
+            log.error("支付成功通知处理失败，稍后重试：{}", outTradeNo, e);
+        }
+    }
+
+    /**
+     * 每10秒重新处理超时未完成的通知
+     */
+    @Scheduled(fixedDelay = 10000)
+    public void retry() {
+        long now = System.currentTimeMillis();
+        List<String> items = stringRedisTemplate.execute(RETRY_SCRIPT, Collections.singletonList(KEY),
+                String.valueOf(now - RETRY_AFTER_MSEC), String.valueOf(BATCH_SIZE), String.valueOf(now));
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        log.warn("重新处理支付成功通知：{}", items.size());
+        for (String outTradeNo : items) {
+            executor.execute(() -> process(outTradeNo));
+        }
+    }
+}
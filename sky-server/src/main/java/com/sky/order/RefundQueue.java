@@ -0,0 +1,146 @@
+package com.sky.order;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.entity.Orders;
+import com.sky.entity.RefundTask;
+import com.sky.mapper.RefundTaskMapper;
+import com.sky.properties.RefundProperties;
+import com.sky.utils.WeChatPayUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 退款队列
+ * 取消订单时只在订单所在事务中写入一条退款任务，接口立即返回；
+ * 后台每秒领取到期的任务交给线程池调用微信退款接口，失败后按指数退避重试，同一个退款单号重复申请只会退款一次
+ */
+@Component
+@Slf4j
+public class RefundQueue {
+
+    //退款金额，与支付金额一致，单位 元
+    private static final BigDecimal REFUND_AMOUNT = new BigDecimal("0.01");
+
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    @Autowired
+    private RefundTaskMapper refundTaskMapper;
+    @Autowired
+    private WeChatPayUtil weChatPayUtil;
+    @Autowired
+    private RefundProperties refundProperties;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(refundProperties.getWorkerThreads(), refundProperties.getWorkerThreads(),
+                0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "refund-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 记录订单的退款任务，需要和订单状态的修改在同一个事务中调用
+     * 退款单号使用订单号，同一个订单重复取消只会记录一次
+     * @param orders
+     */
+    public void add(Orders orders) {
+        LocalDateTime now = LocalDateTime.now();
+        RefundTask refundTask = RefundTask.builder()
+                .orderId(orders.getId())
+                .outTradeNo(orders.getNumber())
+                .outRefundNo(orders.getNumber())
+                .refundAmount(REFUND_AMOUNT)
+                .totalAmount(REFUND_AMOUNT)
+                .status(RefundTask.PENDING)
+                .retryCount(0)
+                .nextRetryTime(now)
+                .createTime(now)
+                .updateTime(now)
+                .build();
+        if (refundTaskMapper.insertIgnore(refundTask) == 0) {
+            log.info("订单的退款任务已存在：{}", orders.getNumber());
+        }
+    }
+
+    /**
+     * 每秒领取到期的退款任务，上一批还没执行完时不领取新的任务
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void processDueTasks() {
+        if (executor.getActiveCount() > 0 || !executor.getQueue().isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<RefundTask> tasks = refundTaskMapper.listDue(now, refundProperties.getBatchSize());
+        LocalDateTime leaseUntil = now.plusSeconds(refundProperties.getClaimSeconds());
+        for (RefundTask task : tasks) {
+            if (refundTaskMapper.claim(task.getId(), task.getNextRetryTime(), leaseUntil) == 1) {
+                executor.execute(() -> refund(task));
+            }
+        }
+    }
+
+    /**
+     * 调用微信退款接口，根据结果更新任务
+     * @param task
+     */
+    private void refund(RefundTask task) {
+        try {
+            String result = weChatPayUtil.refund(
+                    task.getOutTradeNo(), //商户订单号
+                    task.getOutRefundNo(), //商户退款单号
+                    task.getRefundAmount(), //退款金额，单位 元
+                    task.getTotalAmount()); //原订单金额
+            //申请成功时返回退款单号refund_id，失败时返回错误码code和message
+            JSONObject jsonObject = JSON.parseObject(result);
+            if (jsonObject == null || jsonObject.getString("refund_id") == null) {
+                throw new IllegalStateException(result);
+            }
+            task.setStatus(RefundTask.SUCCESS);
+            task.setLastError(null);
+            log.info("订单退款成功：{}", task.getOutRefundNo());
+        } catch (Exception e) {
+            int retryCount = task.getRetryCount() + 1;
+            task.setRetryCount(retryCount);
+            task.setLastError(truncate(String.valueOf(e.getMessage())));
+            if (retryCount >= refundProperties.getMaxRetries()) {
+                task.setStatus(RefundTask.FAILED);
+                log.error("订单退款失败，重试次数已用完，需要人工处理：{}", task.getOutRefundNo(), e);
+            } else {
+                long backoffSeconds = Math.min(refundProperties.getBaseBackoffSeconds() << Math.min(retryCount - 1, 30),
+                        refundProperties.getMaxBackoffSeconds());
+                task.setNextRetryTime(LocalDateTime.now().plusSeconds(backoffSeconds));
+                log.warn("订单退款失败，{}秒后第{}次重试：{}", backoffSeconds, retryCount, task.getOutRefundNo(), e);
+            }
+        }
+        task.setUpdateTime(LocalDateTime.now());
+        refundTaskMapper.update(task);
+    }
+
+    private static String truncate(String message) {
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
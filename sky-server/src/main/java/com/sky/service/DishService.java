@@ -48,8 +48,9 @@ public interface DishService {
      * 菜品起售、停售
      * @param status
      * @param id
+     * @return 停售时一起停售的套餐所属的分类id，用于清理套餐缓存
      */
-    void status(Integer status, Long id);
+    List<Long> status(Integer status, Long id);
 
     /**
      * 根据分类id查询菜品
@@ -64,4 +65,11 @@ public interface DishService {
      * @return
      */
     List<DishVO> listWithFlavor(Dish dish);
+
+    /**
+     * 查询菜品所属的分类id
+     * @param ids
+     * @return
+     */
+    List<Long> getCategoryIds(List<Long> ids);
 }
@@ -74,4 +74,10 @@ public interface OrderService {
     void delivery(Long id);
 
     void complete(Long id);
+
+    /**
+     * 客户催单
+     * @param id
+     */
+    void reminder(Long id);
 }
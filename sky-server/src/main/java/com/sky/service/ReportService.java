@@ -0,0 +1,80 @@
+package com.sky.service;
+
+import com.sky.vo.OrderReportVO;
+import com.sky.vo.SalesTop10ReportVO;
+import com.sky.vo.TurnoverReportVO;
+import com.sky.vo.UserReportVO;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ReportService {
+
+    /**
+     * 营业额统计
+     * @param begin
+     * @param end
+     * @return
+     */
+    TurnoverReportVO getTurnoverStatistics(LocalDate begin, LocalDate end);
+
+    /**
+     * 用户统计
+     * @param begin
+     * @param end
+     * @return
+     */
+    UserReportVO getUserStatistics(LocalDate begin, LocalDate end);
+
+    /**
+     * 订单统计
+     * @param begin
+     * @param end
+     * @return
+     */
+    OrderReportVO getOrderStatistics(LocalDate begin, LocalDate end);
+
+    /**
+     * 销量排名top10
+     * @param begin
+     * @param end
+     * @return
+     */
+    SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end);
+
+    /**
+     * 新订单写入后，累加下单日期的订单数
+     * @param date
+     * @param count
+     */
+    void ordersSubmitted(LocalDate date, int count);
+
+    /**
+     * 订单完成后，累加下单日期的营业额、有效订单数和商品销量
+     * @param orderIds
+     */
+    void ordersCompleted(List<Long> orderIds);
+
+    /**
+     * 新用户注册后，累加注册日期的新增用户数
+     * @param date
+     */
+    void userRegistered(LocalDate date);
+
+    /**
+     * 根据订单表和用户表重算日期范围内的汇总数据，一次最多31天
+     * @param begin
+     * @param end
+     */
+    void rebuild(LocalDate begin, LocalDate end);
+
+    /**
+     * 导出日期范围内的运营数据报表
+     * @param begin
+     * @param end
+     * @param out
+     */
+    void exportBusinessData(LocalDate begin, LocalDate end, OutputStream out) throws IOException;
+}
@@ -0,0 +1,63 @@
+package com.sky.service;
+
+import com.sky.entity.Orders;
+import com.sky.vo.BusinessDataVO;
+import com.sky.vo.DishOverViewVO;
+import com.sky.vo.OrderOverViewVO;
+import com.sky.vo.SetmealOverViewVO;
+
+import java.time.LocalDate;
+
+public interface WorkspaceService {
+
+    /**
+     * 查询今日运营数据
+     * @return
+     */
+    BusinessDataVO getBusinessData();
+
+    /**
+     * 查询今日订单管理数据
+     * @return
+     */
+    OrderOverViewVO getOrderOverView();
+
+    /**
+     * 查询菜品总览
+     * @return
+     */
+    DishOverViewVO getDishOverView();
+
+    /**
+     * 查询套餐总览
+     * @return
+     */
+    SetmealOverViewVO getSetmealOverView();
+
+    /**
+     * 新订单写入后，累加下单日期的全部订单数
+     * @param date
+     */
+    void orderSubmitted(LocalDate date);
+
+    /**
+     * 订单状态修改后，把订单从原状态的计数移到新状态的计数
+     * @param ordersDB 修改前的订单
+     * @param status 修改后的状态
+     */
+    void orderStatusChanged(Orders ordersDB, Integer status);
+
+    /**
+     * 批量取消订单后，累加下单日期的已取消订单数
+     * @param date
+     * @param status 订单取消前的状态
+     * @param count 实际取消的订单数量
+     */
+    void ordersCancelled(LocalDate date, Integer status, int count);
+
+    /**
+     * 新用户注册后，累加注册日期的新增用户数
+     * @param date
+     */
+    void userRegistered(LocalDate date);
+}
@@ -23,7 +23,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class DishServiceImpl implements DishService {
@@ -125,7 +128,8 @@ public class DishServiceImpl implements DishService {
         Dish dish = dishMapper.getById(id);
 
         //2.根据菜品id查询口味
-        List<DishFlavor> dishFlavors = dishFlavorMapper.getByDishId(id);
+        List<DishFlavor> dishFlavors = getFlavorsByDishIds(Collections.singletonList(id))
+                .getOrDefault(id, new ArrayList<>());
 
         //3.将数据封装
         DishVO dishVO = new DishVO();
@@ -164,9 +168,10 @@ public class DishServiceImpl implements DishService {
      * 菜品起售、停售
      * @param status
      * @param id
+     * @return 停售时一起停售的套餐所属的分类id
      */
     @Transactional
-    public void status(Integer status, Long id) {
+    public List<Long> status(Integer status, Long id) {
         Dish dish = Dish.builder()
                 .id(id)
                 .status(status)
@@ -187,9 +192,10 @@ public class DishServiceImpl implements DishService {
                             .build();
                     setmealMapper.update(setmeal);
                 }
+                return setmealMapper.getCategoryIdsByIds(setmealIds);
             }
         }
-
+        return Collections.emptyList();
     }
 
     /**
@@ -214,19 +220,53 @@ public class DishServiceImpl implements DishService {
     public List<DishVO> listWithFlavor(Dish dish) {
         List<Dish> dishList = dishMapper.getByCategoryId(dish);
 
-        List<DishVO> dishVOList = new ArrayList<>();
+        List<DishVO> dishVOList = new ArrayList<>(dishList.size());
+        if (dishList.isEmpty()) {
+            return dishVOList;
+        }
+
+        //一次查询出该分类下所有菜品的口味，避免每个菜品查询一次数据库
+        List<Long> dishIds = new ArrayList<>(dishList.size());
+        for (Dish d : dishList) {
+            dishIds.add(d.getId());
+        }
+        Map<Long, List<DishFlavor>> flavorMap = getFlavorsByDishIds(dishIds);
 
         for (Dish d : dishList) {
             DishVO dishVO = new DishVO();
             BeanUtils.copyProperties(d,dishVO);
 
-            //根据菜品id查询对应的口味
-            List<DishFlavor> flavors = dishFlavorMapper.getByDishId(d.getId());
-
-            dishVO.setFlavors(flavors);
+            //从分组结果中取出对应的口味
+            dishVO.setFlavors(flavorMap.getOrDefault(d.getId(), new ArrayList<>()));
             dishVOList.add(dishVO);
         }
 
         return dishVOList;
     }
+
+    /**
+     * 批量查询菜品口味，并按菜品id分组
+     * @param dishIds
+     * @return
+     */
+    private Map<Long, List<DishFlavor>> getFlavorsByDishIds(List<Long> dishIds) {
+        Map<Long, List<DishFlavor>> flavorMap = new HashMap<>();
+        List<DishFlavor> flavors = dishFlavorMapper.getByDishIds(dishIds);
+        for (DishFlavor flavor : flavors) {
+            flavorMap.computeIfAbsent(flavor.getDishId(), k -> new ArrayList<>()).add(flavor);
+        }
+        return flavorMap;
+    }
+
+    /**
+     * 查询菜品所属的分类id
+     * @param ids
+     * @return
+     */
+    public List<Long> getCategoryIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return dishMapper.getCategoryIdsByIds(ids);
+    }
 }
@@ -13,6 +13,7 @@ import com.sky.entity.Employee;
 import com.sky.exception.AccountLockedException;
 import com.sky.exception.AccountNotFoundException;
 import com.sky.exception.PasswordErrorException;
+import com.sky.interceptor.JwtTokenVerifier;
 import com.sky.mapper.EmployeeMapper;
 import com.sky.result.PageResult;
 import com.sky.service.EmployeeService;
@@ -32,6 +33,8 @@ public class EmployeeServiceImpl implements EmployeeService {
 
     @Autowired
     private EmployeeMapper employeeMapper;
+    @Autowired
+    private JwtTokenVerifier jwtTokenVerifier;
 
     /**
      * 员工登录
@@ -119,7 +122,7 @@ public class EmployeeServiceImpl implements EmployeeService {
 
 
     /**
-     * 启用、禁用员工账号
+     * 启用、禁用员工账号，禁用时吊销该员工已签发的令牌
      *
      * @param status
      * @param id
@@ -131,6 +134,9 @@ public class EmployeeServiceImpl implements EmployeeService {
                 .id(id)
                 .build();
         employeeMapper.update(employee);
+        if (Objects.equals(status, StatusConstant.DISABLE)) {
+            jwtTokenVerifier.revokeEmployee(id);
+        }
     }
 
     /**
@@ -4,6 +4,7 @@ import com.alibaba.fastjson.JSONObject;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
 import com.sky.constant.MessageConstant;
+import com.sky.cart.CartStore;
 import com.sky.context.BaseContext;
 import com.sky.dto.*;
 import com.sky.entity.*;
@@ -11,24 +12,38 @@ import com.sky.exception.AddressBookBusinessException;
 import com.sky.exception.OrderBusinessException;
 import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.*;
+import com.sky.order.OrderNumberGenerator;
+import com.sky.order.OrderPricing;
+import com.sky.order.OrderStatusCounter;
+import com.sky.order.OrderSubmitPipeline;
+import com.sky.order.OrderTimeoutQueue;
+import com.sky.order.RefundQueue;
 import com.sky.result.PageResult;
 import com.sky.service.OrderService;
+import com.sky.service.ReportService;
+import com.sky.service.WorkspaceService;
 import com.sky.utils.WeChatPayUtil;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
+import com.sky.websocket.OrderPushServer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.CollectionUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -40,27 +55,48 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private OrderDetailMapper orderDetailMapper;
     @Autowired
-    private ShoppingcartMapper shoppingcartMapper;
+    private CartStore cartStore;
     @Autowired
     private UserMapper userMapper;
     @Autowired
     private AddressBookMapper addressBookMapper;
     @Autowired
     private WeChatPayUtil weChatPayUtil;
+    @Autowired
+    private OrderSubmitPipeline orderSubmitPipeline;
+    @Autowired
+    private OrderNumberGenerator orderNumberGenerator;
+    @Autowired
+    private OrderTimeoutQueue orderTimeoutQueue;
+    @Autowired
+    private ReportService reportService;
+    @Autowired
+    private WorkspaceService workspaceService;
+    @Autowired
+    private OrderPushServer orderPushServer;
+    @Autowired
+    private OrderStatusCounter orderStatusCounter;
+    @Autowired
+    private RefundQueue refundQueue;
+    @Autowired
+    private OrderPricing orderPricing;
 
 
     /**
      * 用户下单
+     * 校验、组装和计价在当前线程完成，订单、订单明细的写入交给下单流水线合并批量写入，
+     * 流水线保证两者在同一个事务中，写入成功后才返回，再从购物车中减去已下单的商品
      *
      * @param ordersSubmitDTO
      * @return
      */
-    //保证数据库操作的原子性
-    @Transactional
     public OrderSubmitVO submit(OrdersSubmitDTO ordersSubmitDTO) {
         //1.处理各种业务异常(地址、购物车)
         //1.1查询地址簿是否为空
         AddressBook addressBook = addressBookMapper.getById(ordersSubmitDTO.getAddressBookId());
+        if (addressBook == null) {
+            throw new AddressBookBusinessException(MessageConstant.ADDRESS_BOOK_IS_NULL);
+        }
         //拼接用户地址，后面插入订单表中使用
         StringBuilder sb = new StringBuilder();
         String address = sb.append(addressBook.getProvinceName())
@@ -68,27 +104,21 @@ public class OrderServiceImpl implements OrderService {
                 .append(addressBook.getDistrictName())
                 .append(addressBook.getDetail())
                 .toString();
-
-        if (addressBook == null) {
-            throw new AddressBookBusinessException(MessageConstant.ADDRESS_BOOK_IS_NULL);
-        }
         //TODO
         //检查用户的收货地址是否超出配送范围
 
-        //1.2查询购物车是否为空
-        ShoppingCart shoppingCart = new ShoppingCart();
+        //1.2查询购物车是否为空，购物车从redis读取
         Long currentId = BaseContext.getCurrentId();
-        shoppingCart.setUserId(currentId);
-        List<ShoppingCart> list = shoppingcartMapper.list(shoppingCart);
+        List<ShoppingCart> list = cartStore.list(currentId);
         if (list == null || list.isEmpty()) {
             throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
         }
 
-        //2.向订单表中插入1条数据
+        //2.组装订单数据
         Orders orders = new Orders();
         BeanUtils.copyProperties(ordersSubmitDTO, orders);
-        orders.setNumber(String.valueOf(System.currentTimeMillis()));
-        orders.setStatus(Orders.UN_PAID);
+        orders.setNumber(orderNumberGenerator.nextNumber());
+        orders.setStatus(Orders.PENDING_PAYMENT);
         orders.setUserId(currentId);
         orders.setOrderTime(LocalDateTime.now());
         orders.setPayStatus(Orders.UN_PAID);
@@ -96,19 +126,31 @@ public class OrderServiceImpl implements OrderService {
         orders.setConsignee(addressBook.getConsignee());
         orders.setAddress(address);
 
-        orderMapper.insert(orders);
-        //3.向订单明细表中插入n条数据
-        List<OrderDetail> orderDetailList = new ArrayList<>(); //订单明细
+        //3.组装订单明细数据，订单id在写入时设置
+        List<OrderDetail> orderDetailList = new ArrayList<>(list.size()); //订单明细
         for (ShoppingCart cart : list) {
             OrderDetail orderDetail = new OrderDetail();
             BeanUtils.copyProperties(cart, orderDetail);
-            orderDetail.setOrderId(orders.getId()); //设置当前订单明细关联的订单id
+            orderDetail.setId(null);
             orderDetailList.add(orderDetail);
         }
-        orderDetailMapper.insertBatch(orderDetailList);
+        //按当前价格重新计算明细单价、打包费和订单总金额，不使用客户端提交的金额
+        orderPricing.price(orders, orderDetailList);
 
-        //4.清空当前用户的购物车信息
-        shoppingcartMapper.deleteByUserId(currentId);
+        //4.写入订单、订单明细
+        orderSubmitPipeline.submit(orders, orderDetailList);
+        //从购物车中减去已下单的商品，下单过程中新加入的商品保留
+        for (ShoppingCart cart : list) {
+            cartStore.increment(currentId, cart, -cart.getNumber());
+        }
+        //加入超时队列，超过15分钟未支付自动取消
+        orderTimeoutQueue.add(orders.getId(), orders.getOrderTime());
+        orderStatusCounter.changed(null, Orders.PENDING_PAYMENT, 1);
+        //订单已由流水线提交，被外层事务调用时等外层事务提交后再修改工作台数据和推送
+        afterCommit(() -> {
+            workspaceService.orderSubmitted(orders.getOrderTime().toLocalDate());
+            orderPushServer.push(OrderPushServer.ORDER_CREATED, orders.getId(), orders.getNumber());
+        });
 
         //5.封装vo，返回结果
         OrderSubmitVO orderSubmitVO = OrderSubmitVO.builder()
@@ -155,20 +197,52 @@ public class OrderServiceImpl implements OrderService {
      *
      * @param outTradeNo
      */
+    @Transactional
     public void paySuccess(String outTradeNo) {
 
         // 根据订单号查询订单
         Orders ordersDB = orderMapper.getByNumber(outTradeNo);
+        if (ordersDB == null) {
+            log.warn("支付成功的订单不存在：{}", outTradeNo);
+            return;
+        }
 
-        // 根据订单id更新订单的状态、支付方式、支付状态、结账时间
-        Orders orders = Orders.builder()
-                .id(ordersDB.getId())
-                .status(Orders.TO_BE_CONFIRMED)
-                .payStatus(Orders.PAID)
-                .checkoutTime(LocalDateTime.now())
-                .build();
+        // 根据订单id更新订单的状态、支付状态、结账时间，订单已不是待付款状态时不再修改
+        if (orderMapper.paySuccess(ordersDB.getId(), LocalDateTime.now()) == 0) {
+            Orders current = orderMapper.getById(ordersDB.getId());
+            if (Orders.CANCELLED.equals(current.getStatus()) && Orders.UN_PAID.equals(current.getPayStatus())) {
+                //订单超时取消后才收到支付成功，原路退款
+                log.warn("已取消的订单支付成功，申请退款：{}", outTradeNo);
+                refundQueue.add(current);
+                orderMapper.update(Orders.builder().id(current.getId()).payStatus(Orders.REFUND).build());
+            } else {
+                log.info("订单已处理过支付成功，订单号：{}", outTradeNo);
+            }
+            return;
+        }
+        orderStatusCounter.changed(ordersDB.getStatus(), Orders.TO_BE_CONFIRMED, 1);
+        //事务提交后再移出超时队列、修改工作台数据和来单提醒，回滚时商家不会收到不存在的来单
+        afterCommit(() -> {
+            orderTimeoutQueue.remove(ordersDB.getId());
+            workspaceService.orderStatusChanged(ordersDB, Orders.TO_BE_CONFIRMED);
+            orderPushServer.push(OrderPushServer.ORDER_PAID, ordersDB.getId(), outTradeNo);
+        });
+    }
 
-        orderMapper.update(orders);
+    /**
+     * 在当前事务提交后执行，没有事务时立即执行
+     * @param action
+     */
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+            return;
+        }
+        action.run();
     }
 
     /**
@@ -189,17 +263,15 @@ public class OrderServiceImpl implements OrderService {
 
         // 查询出订单明细，并封装入OrderVO进行响应
         if (page != null && page.getTotal() > 0) {
+            // 一次查询出当前页所有订单的明细
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(page.getResult());
             for (Orders orders : page) {
-                Long orderId = orders.getId();// 订单id
-
-                // 查询订单明细
-                List<OrderDetail> orderDetails = orderDetailMapper.getByOrderId(orderId);
                 OrderVO orderVO = new OrderVO();
 
                 //将订单数据填充进去
                 BeanUtils.copyProperties(orders, orderVO);
                 //将订单明细数据填充进去
-                orderVO.setOrderDetailList(orderDetails);
+                orderVO.setOrderDetailList(orderDetailMap.getOrDefault(orders.getId(), new ArrayList<>()));
 
                 list.add(orderVO);
             }
@@ -215,6 +287,9 @@ public class OrderServiceImpl implements OrderService {
      */
     public OrderVO details(Long id) {
         Orders orders = orderMapper.getById(id);
+        if (orders == null) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
         List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(id);
         OrderVO orderVO = new OrderVO();
         BeanUtils.copyProperties(orders, orderVO);
@@ -228,6 +303,7 @@ public class OrderServiceImpl implements OrderService {
      * @param id
      * @return
      */
+    @Transactional
     public void usercancelOrderById(Long id) throws Exception {
         // 根据id查询订单
         Orders ordersDB = orderMapper.getById(id);
@@ -247,12 +323,8 @@ public class OrderServiceImpl implements OrderService {
 
         // 订单处于待接单状态下取消，需要进行退款
         if (ordersDB.getStatus().equals(Orders.TO_BE_CONFIRMED)) {
-            //调用微信支付退款接口
-            weChatPayUtil.refund(
-                    ordersDB.getNumber(), //商户订单号
-                    ordersDB.getNumber(), //商户退款单号
-                    new BigDecimal(0.01),//退款金额，单位 元
-                    new BigDecimal(0.01));//原订单金额
+            //记录退款任务，由后台调用微信支付退款接口
+            refundQueue.add(ordersDB);
 
             //支付状态修改为 退款
             orders.setPayStatus(Orders.REFUND);
@@ -263,6 +335,8 @@ public class OrderServiceImpl implements OrderService {
         orders.setCancelReason("用户取消");
         orders.setCancelTime(LocalDateTime.now());
         orderMapper.update(orders);
+        afterCommit(() -> workspaceService.orderStatusChanged(ordersDB, Orders.CANCELLED));
+        orderStatusCounter.changed(ordersDB.getStatus(), Orders.CANCELLED, 1);
     }
 
     /**
@@ -277,16 +351,21 @@ public class OrderServiceImpl implements OrderService {
 
         //查询订单明细表。订单明细表和购物车是对应的
         List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(id);
-        List<ShoppingCart> shoppingcartList = orderDetailList.stream().map(x -> {
-            ShoppingCart shoppingCart = new ShoppingCart();
-            BeanUtils.copyProperties(x, shoppingCart);
-            shoppingCart.setUserId(userId);
-            shoppingCart.setCreateTime(LocalDateTime.now());
-            return shoppingCart;
-        }).collect(Collectors.toList());
-
-        //将数据插入到购物车中
-        shoppingcartMapper.insertBatch(shoppingcartList);
+        LocalDateTime now = LocalDateTime.now();
+        List<ShoppingCart> shoppingcartList = orderDetailList.stream().map(x -> ShoppingCart.builder()
+                .name(x.getName())
+                .image(x.getImage())
+                .userId(userId)
+                .dishId(x.getDishId())
+                .setmealId(x.getSetmealId())
+                .dishFlavor(x.getDishFlavor())
+                .number(x.getNumber())
+                .amount(x.getAmount())
+                .createTime(now)
+                .build()).collect(Collectors.toList());
+
+        //将数据一次性加入到购物车中，已有的商品累加数量
+        cartStore.addAll(userId, shoppingcartList);
     }
 
     /**
@@ -312,11 +391,14 @@ public class OrderServiceImpl implements OrderService {
 
         List<Orders> ordersList = page.getResult();
         if (!CollectionUtils.isEmpty(ordersList)) {
+            // 一次查询出当前页所有订单的明细，按订单id分组
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(ordersList);
+            StringBuilder sb = new StringBuilder();
             for (Orders orders : ordersList) {
                 // 将共同字段复制到OrderVO
                 OrderVO orderVO = new OrderVO();
                 BeanUtils.copyProperties(orders, orderVO);
-                String orderDishes = getOrderDishesStr(orders);
+                String orderDishes = getOrderDishesStr(orderDetailMap.get(orders.getId()), sb);
 
                 // 将订单菜品信息封装到orderVO中，并添加到orderVOList
                 orderVO.setOrderDishes(orderDishes);
@@ -327,23 +409,43 @@ public class OrderServiceImpl implements OrderService {
     }
 
     /**
-     * 根据订单id获取菜品信息字符串
+     * 批量查询订单明细，并按订单id分组
      *
-     * @param orders
+     * @param ordersList
      * @return
      */
-    private String getOrderDishesStr(Orders orders) {
-        // 查询订单菜品详情信息（订单中的菜品和数量）
-        List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(orders.getId());
+    private Map<Long, List<OrderDetail>> getOrderDetailMap(List<Orders> ordersList) {
+        Map<Long, List<OrderDetail>> orderDetailMap = new HashMap<>();
+        if (CollectionUtils.isEmpty(ordersList)) {
+            return orderDetailMap;
+        }
+        List<Long> orderIds = new ArrayList<>(ordersList.size());
+        for (Orders orders : ordersList) {
+            orderIds.add(orders.getId());
+        }
+        for (OrderDetail orderDetail : orderDetailMapper.getByOrderIds(orderIds)) {
+            orderDetailMap.computeIfAbsent(orderDetail.getOrderId(), k -> new ArrayList<>()).add(orderDetail);
+        }
+        return orderDetailMap;
+    }
 
+    /**
+     * 根据订单明细获取菜品信息字符串
+     *
+     * @param orderDetailList
+     * @param sb 复用的拼接缓冲区
+     * @return
+     */
+    private String getOrderDishesStr(List<OrderDetail> orderDetailList, StringBuilder sb) {
+        if (orderDetailList == null) {
+            return "";
+        }
+        sb.setLength(0);
         // 将每一条订单菜品信息拼接为字符串（格式：宫保鸡丁*3；）
-        List<String> orderDishList = orderDetailList.stream().map(x -> {
-            String orderDish = x.getName() + "*" + x.getNumber() + ";";
-            return orderDish;
-        }).collect(Collectors.toList());
-
-        // 将该订单对应的所有菜品信息拼接在一起
-        return String.join("", orderDishList);
+        for (OrderDetail x : orderDetailList) {
+            sb.append(x.getName()).append('*').append(x.getNumber()).append(';');
+        }
+        return sb.toString();
     }
 
     /**
@@ -352,9 +454,9 @@ public class OrderServiceImpl implements OrderService {
      * @return
      */
     public OrderStatisticsVO statistics() {
-        Integer toBeConfirmed = orderMapper.countstatistics(Orders.TO_BE_CONFIRMED);
-        Integer confirmed = orderMapper.countstatistics(Orders.CONFIRMED);
-        Integer deliveryInProgress = orderMapper.countstatistics(Orders.DELIVERY_IN_PROGRESS);
+        Integer toBeConfirmed = orderStatusCounter.get(Orders.TO_BE_CONFIRMED);
+        Integer confirmed = orderStatusCounter.get(Orders.CONFIRMED);
+        Integer deliveryInProgress = orderStatusCounter.get(Orders.DELIVERY_IN_PROGRESS);
 
         OrderStatisticsVO orderStatisticsVO = new OrderStatisticsVO(toBeConfirmed, confirmed, deliveryInProgress);
         return orderStatisticsVO;
@@ -366,31 +468,36 @@ public class OrderServiceImpl implements OrderService {
      * @param ordersConfirmDTO
      */
     public void confirm(OrdersConfirmDTO ordersConfirmDTO) {
+        Orders ordersDB = orderMapper.getById(ordersConfirmDTO.getId());
+        if (ordersDB == null) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
+        //只有处于待接单状态的订单才可以接单
+        if (!Orders.TO_BE_CONFIRMED.equals(ordersDB.getStatus())) {
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
         Orders orders = Orders.builder()
                 .id(ordersConfirmDTO.getId())
                 .status(Orders.CONFIRMED).build();
         orderMapper.update(orders);
+        afterCommit(() -> workspaceService.orderStatusChanged(ordersDB, Orders.CONFIRMED));
+        orderStatusCounter.changed(ordersDB.getStatus(), Orders.CONFIRMED, 1);
     }
 
     /**
      * 拒单
      */
+    @Transactional
     public void rejection(OrdersRejectionDTO ordersRejectionDTO) throws Exception {
         //查询订单
         Orders order = orderMapper.getById(ordersRejectionDTO.getId());
+        if (order == null) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
         //只有处于待接单状态的订单才可以拒单
-        if (order == null || !order.getStatus().equals(Orders.TO_BE_CONFIRMED)) {
+        if (!order.getStatus().equals(Orders.TO_BE_CONFIRMED)) {
             throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
         }
-        //查看支付状态，如果是已付款状态的话需要进行退款
-        Integer pay_status = order.getPayStatus();
-        if (pay_status.equals(Orders.PAID)) {
-            weChatPayUtil.refund(
-                    order.getNumber(), //商户订单号
-                    order.getNumber(), //商户退款单号
-                    new BigDecimal(0.01),//退款金额，单位 元
-                    new BigDecimal(0.01));//原订单金额
-        }
         //更新订单状态，拒单时间，拒单原因
         Orders orders = Orders.builder()
                 .id(ordersRejectionDTO.getId())
@@ -398,7 +505,15 @@ public class OrderServiceImpl implements OrderService {
                 .rejectionReason(ordersRejectionDTO.getRejectionReason())
                 .cancelTime(LocalDateTime.now())
                 .build();
+        //查看支付状态，如果是已付款状态的话需要进行退款，记录退款任务，由后台调用微信支付退款接口
+        Integer pay_status = order.getPayStatus();
+        if (pay_status.equals(Orders.PAID)) {
+            refundQueue.add(order);
+            orders.setPayStatus(Orders.REFUND);
+        }
         orderMapper.update(orders);
+        afterCommit(() -> workspaceService.orderStatusChanged(order, Orders.CANCELLED));
+        orderStatusCounter.changed(order.getStatus(), Orders.CANCELLED, 1);
     }
 
     /**
@@ -406,19 +521,12 @@ public class OrderServiceImpl implements OrderService {
      *
      * @param ordersCancelDTO
      */
+    @Transactional
     public void cancel(OrdersCancelDTO ordersCancelDTO) throws Exception {
         //查询订单
         Orders orders = orderMapper.getById(ordersCancelDTO.getId());
-
-        //查看支付状态，如果是已付款状态的话需要进行退款
-        Integer pay_status = orders.getPayStatus();
-        if (pay_status.equals(Orders.PAID)) {
-            String refund = weChatPayUtil.refund(
-                    orders.getNumber(), //商户订单号
-                    orders.getNumber(), //商户退款单号
-                    new BigDecimal(0.01),//退款金额，单位 元
-                    new BigDecimal(0.01));//原订单金额
-            log.info(refund);
+        if (orders == null) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
         }
 
         //修改订单状态
@@ -428,7 +536,16 @@ public class OrderServiceImpl implements OrderService {
                 .status(Orders.CANCELLED)
                 .cancelReason(ordersCancelDTO.getCancelReason())
                 .build();
+
+        //查看支付状态，如果是已付款状态的话需要进行退款，记录退款任务，由后台调用微信支付退款接口
+        Integer pay_status = orders.getPayStatus();
+        if (pay_status.equals(Orders.PAID)) {
+            refundQueue.add(orders);
+            order.setPayStatus(Orders.REFUND);
+        }
         orderMapper.update(order);
+        afterCommit(() -> workspaceService.orderStatusChanged(orders, Orders.CANCELLED));
+        orderStatusCounter.changed(orders.getStatus(), Orders.CANCELLED, 1);
     }
 
     /**
@@ -439,9 +556,11 @@ public class OrderServiceImpl implements OrderService {
     public void delivery(Long id) {
         //查询订单
         Orders orders = orderMapper.getById(id);
+        if (orders == null) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
         //查询订单的状态，只有“待派送”的订单才可以
-        Integer status = orders.getStatus();
-        if (orders == null || !status.equals(Orders.CONFIRMED)) {
+        if (!orders.getStatus().equals(Orders.CONFIRMED)) {
             throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
         }
         //修改订单状态
@@ -450,6 +569,8 @@ public class OrderServiceImpl implements OrderService {
                 .status(Orders.DELIVERY_IN_PROGRESS)
                 .build();
         orderMapper.update(order);
+        afterCommit(() -> workspaceService.orderStatusChanged(orders, Orders.DELIVERY_IN_PROGRESS));
+        orderStatusCounter.changed(orders.getStatus(), Orders.DELIVERY_IN_PROGRESS, 1);
     }
 
     /**
@@ -457,12 +578,15 @@ public class OrderServiceImpl implements OrderService {
      *
      * @param id
      */
+    @Transactional
     public void complete(Long id) {
         //查询订单
         Orders orders = orderMapper.getById(id);
+        if (orders == null) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
         //查询订单的状态，只有“派送中”的订单才可以
-        Integer status = orders.getStatus();
-        if (orders == null || !status.equals(Orders.DELIVERY_IN_PROGRESS)) {
+        if (!orders.getStatus().equals(Orders.DELIVERY_IN_PROGRESS)) {
             throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
         }
         //修改订单状态
@@ -472,5 +596,23 @@ public class OrderServiceImpl implements OrderService {
                 .deliveryTime(LocalDateTime.now())
                 .build();
         orderMapper.update(order);
+        //累加每日营业额和商品销量
+        reportService.ordersCompleted(Collections.singletonList(id));
+        afterCommit(() -> workspaceService.orderStatusChanged(orders, Orders.COMPLETED));
+        orderStatusCounter.changed(orders.getStatus(), Orders.COMPLETED, 1);
+    }
+
+    /**
+     * 客户催单
+     *
+     * @param id
+     */
+    public void reminder(Long id) {
+        Orders ordersDB = orderMapper.getById(id);
+        //只能催自己的订单
+        if (ordersDB == null || !ordersDB.getUserId().equals(BaseContext.getCurrentId())) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
+        orderPushServer.push(OrderPushServer.REMINDER, id, ordersDB.getNumber());
     }
 }
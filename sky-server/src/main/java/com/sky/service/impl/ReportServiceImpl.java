@@ -0,0 +1,404 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.dto.OrderExportDTO;
+import com.sky.entity.DailyReport;
+import com.sky.exception.ReportBusinessException;
+import com.sky.mapper.ReportMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.service.ReportService;
+import com.sky.vo.OrderReportVO;
+import com.sky.vo.SalesTop10ReportVO;
+import com.sky.vo.TurnoverReportVO;
+import com.sky.vo.UserReportVO;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * 数据统计
+ * 所有统计数据都从每日汇总表daily_report、daily_sales中读取，查询n天的数据只是一次按日期的范围查询，
+ * 汇总表由订单状态变化增量维护，并由定时任务每天按订单表重算前一天的数据
+ */
+@Service
+@Slf4j
+public class ReportServiceImpl implements ReportService {
+
+    //一次最多重算的天数
+    private static final int REBUILD_MAX_DAYS = 31;
+
+    //导出时内存中保留的行数，超出的行写入临时文件
+    private static final int EXPORT_ROW_WINDOW = 100;
+
+    //xlsx单个sheet的最大行数，订单明细超出时续写到新的sheet
+    private static final int MAX_ROWS_PER_SHEET = SpreadsheetVersion.EXCEL2007.getMaxRows();
+
+    private static final String[] BUSINESS_HEADERS = {"日期", "营业额", "有效订单", "订单完成率", "平均客单价", "新增用户数"};
+
+    private static final String[] ORDER_DETAIL_HEADERS = {"订单号", "下单时间", "订单状态", "收货人", "手机号", "地址",
+            "订单金额", "商品名称", "口味", "数量", "金额"};
+
+    //订单状态 1待付款 2待接单 3已接单 4派送中 5已完成 6已取消
+    private static final String[] STATUS_NAMES = {"", "待付款", "待接单", "已接单", "派送中", "已完成", "已取消"};
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Autowired
+    private ReportMapper reportMapper;
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 营业额统计
+     * @param begin
+     * @param end
+     * @return
+     */
+    public TurnoverReportVO getTurnoverStatistics(LocalDate begin, LocalDate end) {
+        checkDateRange(begin, end);
+        Map<LocalDate, DailyReport> reportMap = getReportMap(begin, end);
+
+        StringJoiner dateList = new StringJoiner(",");
+        StringJoiner turnoverList = new StringJoiner(",");
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            DailyReport report = reportMap.get(date);
+            dateList.add(date.toString());
+            turnoverList.add(report == null ? "0.0" : String.valueOf(report.getTurnover().doubleValue()));
+        }
+
+        return TurnoverReportVO.builder()
+                .dateList(dateList.toString())
+                .turnoverList(turnoverList.toString())
+                .build();
+    }
+
+    /**
+     * 用户统计
+     * @param begin
+     * @param end
+     * @return
+     */
+    public UserReportVO getUserStatistics(LocalDate begin, LocalDate end) {
+        checkDateRange(begin, end);
+        Map<LocalDate, DailyReport> reportMap = getReportMap(begin, end);
+        //开始日期之前的用户总数从用户表统计，汇总表可能没有覆盖全部历史日期，之后逐天累加
+        int totalUsers = userMapper.countByCreateTimeBefore(begin.atStartOfDay());
+
+        StringJoiner dateList = new StringJoiner(",");
+        StringJoiner totalUserList = new StringJoiner(",");
+        StringJoiner newUserList = new StringJoiner(",");
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            DailyReport report = reportMap.get(date);
+            int newUsers = report == null ? 0 : report.getNewUsers();
+            totalUsers += newUsers;
+            dateList.add(date.toString());
+            totalUserList.add(String.valueOf(totalUsers));
+            newUserList.add(String.valueOf(newUsers));
+        }
+
+        return UserReportVO.builder()
+                .dateList(dateList.toString())
+                .totalUserList(totalUserList.toString())
+                .newUserList(newUserList.toString())
+                .build();
+    }
+
+    /**
+     * 订单统计
+     * @param begin
+     * @param end
+     * @return
+     */
+    public OrderReportVO getOrderStatistics(LocalDate begin, LocalDate end) {
+        checkDateRange(begin, end);
+        Map<LocalDate, DailyReport> reportMap = getReportMap(begin, end);
+
+        StringJoiner dateList = new StringJoiner(",");
+        StringJoiner orderCountList = new StringJoiner(",");
+        StringJoiner validOrderCountList = new StringJoiner(",");
+        int totalOrderCount = 0;
+        int validOrderCount = 0;
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            DailyReport report = reportMap.get(date);
+            int orderCount = report == null ? 0 : report.getOrderCount();
+            int validCount = report == null ? 0 : report.getValidOrderCount();
+            totalOrderCount += orderCount;
+            validOrderCount += validCount;
+            dateList.add(date.toString());
+            orderCountList.add(String.valueOf(orderCount));
+            validOrderCountList.add(String.valueOf(validCount));
+        }
+
+        //订单完成率
+        Double orderCompletionRate = totalOrderCount == 0 ? 0.0 : validOrderCount * 1.0 / totalOrderCount;
+
+        return OrderReportVO.builder()
+                .dateList(dateList.toString())
+                .orderCountList(orderCountList.toString())
+                .validOrderCountList(validOrderCountList.toString())
+                .totalOrderCount(totalOrderCount)
+                .validOrderCount(validOrderCount)
+                .orderCompletionRate(orderCompletionRate)
+                .build();
+    }
+
+    /**
+     * 销量排名top10
+     * @param begin
+     * @param end
+     * @return
+     */
+    public SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end) {
+        checkDateRange(begin, end);
+        List<GoodsSalesDTO> goodsSalesList = reportMapper.top10(begin, end);
+
+        StringJoiner nameList = new StringJoiner(",");
+        StringJoiner numberList = new StringJoiner(",");
+        for (GoodsSalesDTO goodsSales : goodsSalesList) {
+            nameList.add(goodsSales.getName());
+            numberList.add(String.valueOf(goodsSales.getNumber()));
+        }
+
+        return SalesTop10ReportVO.builder()
+                .nameList(nameList.toString())
+                .numberList(numberList.toString())
+                .build();
+    }
+
+    /**
+     * 新订单写入后，累加下单日期的订单数
+     * @param date
+     * @param count
+     */
+    public void ordersSubmitted(LocalDate date, int count) {
+        reportMapper.addOrderCount(date, count);
+    }
+
+    /**
+     * 订单完成后，累加下单日期的营业额、有效订单数和商品销量
+     * @param orderIds
+     */
+    public void ordersCompleted(List<Long> orderIds) {
+        if (orderIds == null || orderIds.isEmpty()) {
+            return;
+        }
+        reportMapper.addTurnoverByOrderIds(orderIds);
+        reportMapper.addSalesByOrderIds(orderIds);
+    }
+
+    /**
+     * 新用户注册后，累加注册日期的新增用户数
+     * @param date
+     */
+    public void userRegistered(LocalDate date) {
+        reportMapper.addNewUsers(date, 1);
+    }
+
+    /**
+     * 根据订单表和用户表重算日期范围内的汇总数据
+     * 每天在单独的事务中重算，避免长事务长时间锁住汇总表
+     * @param begin
+     * @param end
+     */
+    public void rebuild(LocalDate begin, LocalDate end) {
+        checkDateRange(begin, end);
+        if (ChronoUnit.DAYS.between(begin, end) >= REBUILD_MAX_DAYS) {
+            throw new ReportBusinessException(MessageConstant.REPORT_REBUILD_RANGE_TOO_LARGE);
+        }
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            LocalDate day = date;
+            LocalDateTime dayBegin = day.atStartOfDay();
+            LocalDateTime dayEnd = day.plusDays(1).atStartOfDay();
+            transactionTemplate.executeWithoutResult(status -> {
+                reportMapper.rebuildReport(day, dayBegin, dayEnd);
+                reportMapper.deleteSales(day);
+                reportMapper.rebuildSales(day, dayBegin, dayEnd);
+            });
+        }
+        log.info("重算每日汇总数据完成：{} ~ {}", begin, end);
+    }
+
+    /**
+     * 开始日期和结束日期都必须指定，且开始日期不能晚于结束日期
+     * @param begin
+     * @param end
+     */
+    private static void checkDateRange(LocalDate begin, LocalDate end) {
+        if (begin == null || end == null || begin.isAfter(end)) {
+            throw new ReportBusinessException(MessageConstant.REPORT_DATE_RANGE_ERROR);
+        }
+    }
+
+    /**
+     * 一次范围查询出日期范围内的汇总数据，按日期建立索引
+     * @param begin
+     * @param end
+     * @return
+     */
+    private Map<LocalDate, DailyReport> getReportMap(LocalDate begin, LocalDate end) {
+        Map<LocalDate, DailyReport> reportMap = new HashMap<>();
+        for (DailyReport report : reportMapper.listByDate(begin, end)) {
+            reportMap.put(report.getReportDate(), report);
+        }
+        return reportMap;
+    }
+
+    /**
+     * 导出日期范围内的运营数据报表
+     * 使用SXSSF流式写入，内存中只保留最近的少量行；订单明细通过游标逐行读取，不会一次加载到内存
+     * @param begin
+     * @param end
+     * @param out
+     */
+    @Transactional(readOnly = true)
+    public void exportBusinessData(LocalDate begin, LocalDate end, OutputStream out) throws IOException {
+        checkDateRange(begin, end);
+        SXSSFWorkbook workbook = new SXSSFWorkbook(EXPORT_ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            CellStyle headerStyle = workbook.createCellStyle();
+            Font font = workbook.createFont();
+            font.setBold(true);
+            headerStyle.setFont(font);
+
+            writeBusinessSheet(workbook, headerStyle, begin, end);
+            writeOrderDetailSheets(workbook, headerStyle, begin, end);
+            workbook.write(out);
+            out.flush();
+        } finally {
+            //删除流式写入时产生的临时文件
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * 写入运营数据：第一行为时间范围，第二行为概览数据，之后是每天的明细
+     * @param workbook
+     * @param headerStyle
+     * @param begin
+     * @param end
+     */
+    private void writeBusinessSheet(SXSSFWorkbook workbook, CellStyle headerStyle, LocalDate begin, LocalDate end) {
+        Map<LocalDate, DailyReport> reportMap = getReportMap(begin, end);
+        BigDecimal turnover = BigDecimal.ZERO;
+        int orderCount = 0;
+        int validOrderCount = 0;
+        int newUsers = 0;
+        for (DailyReport report : reportMap.values()) {
+            turnover = turnover.add(report.getTurnover());
+            orderCount += report.getOrderCount();
+            validOrderCount += report.getValidOrderCount();
+            newUsers += report.getNewUsers();
+        }
+
+        Sheet sheet = workbook.createSheet("运营数据");
+        int rowNum = 0;
+        createRow(sheet, rowNum++, headerStyle, "时间：" + begin + " 至 " + end);
+        createRow(sheet, rowNum++, headerStyle, "营业额", "订单完成率", "新增用户数", "有效订单", "平均客单价");
+        createRow(sheet, rowNum++, null, turnover, completionRate(validOrderCount, orderCount), newUsers,
+                validOrderCount, unitPrice(turnover, validOrderCount));
+        rowNum++;
+
+        createRow(sheet, rowNum++, headerStyle, (Object[]) BUSINESS_HEADERS);
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            DailyReport report = reportMap.get(date);
+            if (report == null) {
+                createRow(sheet, rowNum++, null, date.toString(), 0, 0, 0, 0, 0);
+                continue;
+            }
+            createRow(sheet, rowNum++, null, date.toString(), report.getTurnover(), report.getValidOrderCount(),
+                    completionRate(report.getValidOrderCount(), report.getOrderCount()),
+                    unitPrice(report.getTurnover(), report.getValidOrderCount()), report.getNewUsers());
+        }
+    }
+
+    /**
+     * 通过游标逐行写入订单明细，单个sheet写满后续写到新的sheet
+     * @param workbook
+     * @param headerStyle
+     * @param begin
+     * @param end
+     */
+    private void writeOrderDetailSheets(SXSSFWorkbook workbook, CellStyle headerStyle, LocalDate begin, LocalDate end) throws IOException {
+        Sheet sheet = null;
+        int sheetCount = 0;
+        int rowNum = 0;
+        try (Cursor<OrderExportDTO> cursor = reportMapper.cursorOrderDetails(begin.atStartOfDay(), end.plusDays(1).atStartOfDay())) {
+            for (OrderExportDTO detail : cursor) {
+                if (sheet == null || rowNum == MAX_ROWS_PER_SHEET) {
+                    sheetCount++;
+                    sheet = workbook.createSheet(sheetCount == 1 ? "订单明细" : "订单明细" + sheetCount);
+                    createRow(sheet, 0, headerStyle, (Object[]) ORDER_DETAIL_HEADERS);
+                    rowNum = 1;
+                }
+                createRow(sheet, rowNum++, null, detail.getNumber(), detail.getOrderTime().format(TIME_FORMATTER),
+                        STATUS_NAMES[detail.getStatus()], detail.getConsignee(), detail.getPhone(), detail.getAddress(),
+                        detail.getOrderAmount(), detail.getName(), detail.getDishFlavor(), detail.getQuantity(), detail.getAmount());
+            }
+        }
+        if (sheet == null) {
+            sheet = workbook.createSheet("订单明细");
+            createRow(sheet, 0, headerStyle, (Object[]) ORDER_DETAIL_HEADERS);
+        }
+    }
+
+    /**
+     * 创建一行，数字写为数值单元格，其余写为文本，null留空
+     * @param sheet
+     * @param rowNum
+     * @param style
+     * @param values
+     */
+    private static void createRow(Sheet sheet, int rowNum, CellStyle style, Object... values) {
+        Row row = sheet.createRow(rowNum);
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value == null) {
+                continue;
+            }
+            Cell cell = row.createCell(i);
+            if (value instanceof Number) {
+                cell.setCellValue(((Number) value).doubleValue());
+            } else {
+                cell.setCellValue(value.toString());
+            }
+            if (style != null) {
+                cell.setCellStyle(style);
+            }
+        }
+    }
+
+    private static double completionRate(int validOrderCount, int orderCount) {
+        return orderCount == 0 ? 0.0 : validOrderCount * 1.0 / orderCount;
+    }
+
+    private static double unitPrice(BigDecimal turnover, int validOrderCount) {
+        return validOrderCount == 0 ? 0.0 : turnover.doubleValue() / validOrderCount;
+    }
+}
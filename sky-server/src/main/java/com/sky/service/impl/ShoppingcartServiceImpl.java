@@ -1,13 +1,15 @@
 package com.sky.service.impl;
 
+import com.sky.cache.CatalogSnapshot;
+import com.sky.cart.CartStore;
+import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.ShoppingCartDTO;
 import com.sky.entity.Dish;
 import com.sky.entity.Setmeal;
 import com.sky.entity.ShoppingCart;
-import com.sky.mapper.DishMapper;
-import com.sky.mapper.SetmealMapper;
-import com.sky.mapper.ShoppingcartMapper;
+import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.service.ShoppingcartService;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,58 +18,61 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.util.List;
 
+/**
+ * 购物车，数据保存在redis中，异步写入数据库
+ */
 @Service
 public class ShoppingcartServiceImpl implements ShoppingcartService {
 
     @Autowired
-    private ShoppingcartMapper shoppingcartMapper;
+    private CartStore cartStore;
     @Autowired
-    private DishMapper dishMapper;
-    @Autowired
-    private SetmealMapper setmealMapper;
+    private CatalogSnapshot catalogSnapshot;
 
     /**
      * 添加购物车
      * @param shoppingCartDTO
      */
     public void add(ShoppingCartDTO shoppingCartDTO) {
-        //判断当前加入到购物车中的商品是否已经存在
         ShoppingCart shoppingCart = new ShoppingCart();
         BeanUtils.copyProperties(shoppingCartDTO, shoppingCart);
         Long currentId = BaseContext.getCurrentId();
-        shoppingCart.setUserId(currentId);
 
-        //查看购物车中是否已经存在该商品
-        List<ShoppingCart> list = shoppingcartMapper.list(shoppingCart);
+        //判断加入购物车的是菜品还是套餐，名称、图片、价格从本地快照读取，不存在或已停售的商品不能加入购物车
+        Long dishId = shoppingCartDTO.getDishId();
+        Long setmealId = shoppingCartDTO.getSetmealId();
+        if (dishId != null) {
+            //说明添加到购物车的是菜品
+            Dish dish = catalogSnapshot.getDish(dishId);
+            if (dish == null || !StatusConstant.ENABLE.equals(dish.getStatus())) {
+                throw new ShoppingCartBusinessException(MessageConstant.CART_ITEM_UNAVAILABLE);
+            }
+            shoppingCart.setName(dish.getName());
+            shoppingCart.setImage(dish.getImage());
+            shoppingCart.setAmount(dish.getPrice());
+        } else if (setmealId != null) {
+            //说明添加到购物车的是套餐
+            Setmeal setmeal = catalogSnapshot.getSetmeal(setmealId);
+            if (setmeal == null || !StatusConstant.ENABLE.equals(setmeal.getStatus())) {
+                throw new ShoppingCartBusinessException(MessageConstant.CART_ITEM_UNAVAILABLE);
+            }
+            shoppingCart.setName(setmeal.getName());
+            shoppingCart.setImage(setmeal.getImage());
+            shoppingCart.setAmount(setmeal.getPrice());
+        } else {
+            throw new ShoppingCartBusinessException(MessageConstant.CART_ITEM_UNAVAILABLE);
+        }
 
-        //若存在，只需将数量加一
-        if (list != null && !list.isEmpty()) {
-            shoppingCart = list.get(0);
-            shoppingCart.setNumber(shoppingCart.getNumber() + 1);
-            shoppingcartMapper.update(shoppingCart);
+        //若购物车中已经存在该商品，只需将数量加一
+        if (cartStore.increment(currentId, shoppingCart, 1)) {
             return;
-        } else {
-            //若不存在，需要插入一条购物车数据
-            //还需判断加入购物车的是菜品还是套餐
-            Long dishId = shoppingCartDTO.getDishId();
-            if (dishId != null) {
-                //说明添加到购物车的是菜品
-                Dish dish = dishMapper.getById(dishId);
-                shoppingCart.setName(dish.getName());
-                shoppingCart.setImage(dish.getImage());
-                shoppingCart.setAmount(dish.getPrice());
-            } else {
-                //说明添加到购物车的是套餐
-                Setmeal setmeal = setmealMapper.getBySetmealId(shoppingCartDTO.getSetmealId());
-                shoppingCart.setName(setmeal.getName());
-                shoppingCart.setImage(setmeal.getImage());
-                shoppingCart.setAmount(setmeal.getPrice());
-            }
         }
+
+        //若不存在，需要添加一条购物车数据
         shoppingCart.setNumber(1);
         shoppingCart.setCreateTime(LocalDateTime.now());
-        //将购物车数据插入到数据库中
-        shoppingcartMapper.insert(shoppingCart);
+        //并发添加同一商品时只会保存一份商品信息，数量累加
+        cartStore.add(currentId, shoppingCart);
     }
 
     /**
@@ -75,43 +80,23 @@ public class ShoppingcartServiceImpl implements ShoppingcartService {
      * @return
      */
     public List<ShoppingCart> list() {
-        Long currentId = BaseContext.getCurrentId();
-        ShoppingCart shoppingCart = new ShoppingCart();
-        shoppingCart.setUserId(currentId);
-        List<ShoppingCart> shoppingCartList = shoppingcartMapper.list(shoppingCart);
-        return shoppingCartList;
+        return cartStore.list(BaseContext.getCurrentId());
     }
 
     /**
      * 清空购物车
      */
     public void clean() {
-        Long currentId = BaseContext.getCurrentId();
-        shoppingcartMapper.clean(currentId);
+        cartStore.clean(BaseContext.getCurrentId());
     }
 
     /**
-     * 删除购物车中一个商品
+     * 删除购物车中一个商品，份数减到0时删除该商品
      * @return
      */
     public void sub(ShoppingCartDTO shoppingCartDTO) {
-        Long currentId = BaseContext.getCurrentId();
         ShoppingCart shoppingCart = new ShoppingCart();
         BeanUtils.copyProperties(shoppingCartDTO, shoppingCart);
-        //设置查询条件，查询当前登录用户的购物车数据
-        shoppingCart.setUserId(currentId);
-
-        List<ShoppingCart> list = shoppingcartMapper.list(shoppingCart);
-        if (list != null && !list.isEmpty()) {
-            shoppingCart = list.get(0);
-            if (shoppingCart.getNumber() == 1){
-                //当前商品在购物车中的份数为1，直接删除当前记录
-                shoppingcartMapper.deleteById(shoppingCart.getId());
-            } else {
-                //当前商品在购物车中的份数不为1，修改份数即可
-                shoppingCart.setNumber(shoppingCart.getNumber() - 1);
-                shoppingcartMapper.update(shoppingCart);
-            }
-        }
+        cartStore.increment(BaseContext.getCurrentId(), shoppingCart, -1);
     }
 }
@@ -7,7 +7,9 @@ import com.sky.entity.User;
 import com.sky.exception.LoginFailedException;
 import com.sky.mapper.UserMapper;
 import com.sky.properties.WeChatProperties;
+import com.sky.service.ReportService;
 import com.sky.service.UserService;
+import com.sky.service.WorkspaceService;
 import com.sky.utils.HttpClientUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -24,6 +26,10 @@ public class UserServiceImpl implements UserService {
     private WeChatProperties weChatProperties;
     @Autowired
     private UserMapper userMapper;
+    @Autowired
+    private ReportService reportService;
+    @Autowired
+    private WorkspaceService workspaceService;
 
     /**
      * 微信登录
@@ -50,6 +56,9 @@ public class UserServiceImpl implements UserService {
                     .createTime(LocalDateTime.now())
                     .build();
             userMapper.insert(user);
+            //累加每日新增用户数
+            reportService.userRegistered(user.getCreateTime().toLocalDate());
+            workspaceService.userRegistered(user.getCreateTime().toLocalDate());
         }
 
         //返回这个用户对象
@@ -0,0 +1,362 @@
+package com.sky.service.impl;
+
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Orders;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.service.WorkspaceService;
+import com.sky.vo.BusinessDataVO;
+import com.sky.vo.DishOverViewVO;
+import com.sky.vo.OrderOverViewVO;
+import com.sky.vo.SetmealOverViewVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 工作台
+ * 今日运营数据和订单数据来自redis中按天存放的计数器(hash)，查询时不扫描订单表；
+ * 下单、支付、接单、派送、完成、取消和新用户注册时先累加到本地LongAdder，每秒批量刷新到redis，
+ * 当天第一次查询时按订单表和用户表初始化计数器，之后只靠增量维护；
+ * 计数器是近似值：初始化查询前后一个刷新周期内其他节点的增量可能重复计数，由第二天按订单表重算的报表为准
+ */
+@Service
+@Slf4j
+public class WorkspaceServiceImpl implements WorkspaceService {
+
+    //计数器的key前缀，完整key为 workspace_yyyyMMdd
+    private static final String KEY_PREFIX = "workspace_";
+    private static final DateTimeFormatter KEY_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final long KEY_EXPIRE_SECONDS = TimeUnit.DAYS.toSeconds(2);
+
+    //计数器字段，营业额以分为单位
+    private static final String TURNOVER = "turnover";
+    private static final String ALL = "all";
+    private static final String WAITING = "waiting";
+    private static final String DELIVERED = "delivered";
+    private static final String COMPLETED = "completed";
+    private static final String CANCELLED = "cancelled";
+    private static final String NEW_USERS = "newUsers";
+    //计数器已经按数据库初始化，值为初始化查询数据库的时间(毫秒)
+    private static final String SEEDED = "seeded";
+
+    //只有一个节点能完成初始化；初始化之前不会有增量写入计数器，不需要清理
+    private static final DefaultRedisScript<Long> SEED_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('hexists', KEYS[1], 'seeded') == 1 then return 0 end " +
+            "for i = 2, #ARGV, 2 do redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+            "redis.call('expire', KEYS[1], ARGV[1]) " +
+            "return 1",
+            Long.class);
+
+    //刷新增量，ARGV[2]为本批增量最后一次累加的时间；
+    //计数器还未初始化，或者本批增量都发生在初始化查询数据库之前时丢弃，这些变化已经包含在数据库的统计结果中
+    private static final DefaultRedisScript<Long> FLUSH_SCRIPT = new DefaultRedisScript<>(
+            "local seededAt = redis.call('hget', KEYS[1], 'seeded') " +
+            "if not seededAt or tonumber(ARGV[2]) < tonumber(seededAt) then return 0 end " +
+            "for i = 3, #ARGV, 2 do redis.call('hincrby', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+            "redis.call('expire', KEYS[1], ARGV[1]) " +
+            "return 1",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+
+    //本节点还未刷新到redis的增量，日期 -> 字段 -> 增量
+    private final ConcurrentHashMap<LocalDate, ConcurrentHashMap<String, LongAdder>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 查询今日运营数据
+     * @return
+     */
+    public BusinessDataVO getBusinessData() {
+        Map<String, Long> counters = getCounters(LocalDate.now());
+        long turnover = counters.getOrDefault(TURNOVER, 0L);
+        long validOrderCount = counters.getOrDefault(COMPLETED, 0L);
+        long totalOrderCount = counters.getOrDefault(ALL, 0L);
+
+        double orderCompletionRate = totalOrderCount == 0 ? 0.0 : (double) validOrderCount / totalOrderCount;
+        double unitPrice = validOrderCount == 0 ? 0.0 : turnover / 100.0 / validOrderCount;
+
+        return BusinessDataVO.builder()
+                .turnover(turnover / 100.0)
+                .validOrderCount((int) validOrderCount)
+                .orderCompletionRate(orderCompletionRate)
+                .unitPrice(unitPrice)
+                .newUsers(counters.getOrDefault(NEW_USERS, 0L).intValue())
+                .build();
+    }
+
+    /**
+     * 查询今日订单管理数据
+     * @return
+     */
+    public OrderOverViewVO getOrderOverView() {
+        Map<String, Long> counters = getCounters(LocalDate.now());
+        return OrderOverViewVO.builder()
+                .waitingOrders(counters.getOrDefault(WAITING, 0L).intValue())
+                .deliveredOrders(counters.getOrDefault(DELIVERED, 0L).intValue())
+                .completedOrders(counters.getOrDefault(COMPLETED, 0L).intValue())
+                .cancelledOrders(counters.getOrDefault(CANCELLED, 0L).intValue())
+                .allOrders(counters.getOrDefault(ALL, 0L).intValue())
+                .build();
+    }
+
+    /**
+     * 查询菜品总览
+     * @return
+     */
+    public DishOverViewVO getDishOverView() {
+        return DishOverViewVO.builder()
+                .sold(dishMapper.countByStatus(StatusConstant.ENABLE))
+                .discontinued(dishMapper.countByStatus(StatusConstant.DISABLE))
+                .build();
+    }
+
+    /**
+     * 查询套餐总览
+     * @return
+     */
+    public SetmealOverViewVO getSetmealOverView() {
+        return SetmealOverViewVO.builder()
+                .sold(setmealMapper.countByStatus(StatusConstant.ENABLE))
+                .discontinued(setmealMapper.countByStatus(StatusConstant.DISABLE))
+                .build();
+    }
+
+    /**
+     * 新订单写入后，累加下单日期的全部订单数
+     * @param date
+     */
+    public void orderSubmitted(LocalDate date) {
+        add(date, ALL, 1);
+    }
+
+    /**
+     * 订单状态修改后，把订单从原状态的计数移到新状态的计数
+     * @param ordersDB 修改前的订单
+     * @param status 修改后的状态
+     */
+    public void orderStatusChanged(Orders ordersDB, Integer status) {
+        Integer oldStatus = ordersDB.getStatus();
+        if (oldStatus.equals(status)) {
+            return;
+        }
+        LocalDate date = ordersDB.getOrderTime().toLocalDate();
+        add(date, statusField(oldStatus), -1);
+        add(date, statusField(status), 1);
+
+        long amount = ordersDB.getAmount().movePointRight(2).longValue();
+        if (Orders.COMPLETED.equals(status)) {
+            add(date, TURNOVER, amount);
+        } else if (Orders.COMPLETED.equals(oldStatus)) {
+            add(date, TURNOVER, -amount);
+        }
+    }
+
+    /**
+     * 批量取消订单后，累加下单日期的已取消订单数
+     * @param date
+     * @param status 订单取消前的状态
+     * @param count 实际取消的订单数量
+     */
+    public void ordersCancelled(LocalDate date, Integer status, int count) {
+        add(date, statusField(status), -count);
+        add(date, CANCELLED, count);
+    }
+
+    /**
+     * 新用户注册后，累加注册日期的新增用户数
+     * @param date
+     */
+    public void userRegistered(LocalDate date) {
+        add(date, NEW_USERS, 1);
+    }
+
+    /**
+     * 订单状态对应的计数器字段，待付款、派送中没有单独展示，不计数
+     * @param status
+     * @return
+     */
+    private static String statusField(Integer status) {
+        if (Orders.TO_BE_CONFIRMED.equals(status)) {
+            return WAITING;
+        }
+        if (Orders.CONFIRMED.equals(status)) {
+            return DELIVERED;
+        }
+        if (Orders.COMPLETED.equals(status)) {
+            return COMPLETED;
+        }
+        if (Orders.CANCELLED.equals(status)) {
+            return CANCELLED;
+        }
+        return null;
+    }
+
+    /**
+     * 累加到本地增量，工作台只展示今天的数据，其他日期的变化直接忽略
+     * @param date
+     * @param field
+     * @param delta
+     */
+    private void add(LocalDate date, String field, long delta) {
+        if (field == null || delta == 0 || !date.equals(LocalDate.now())) {
+            return;
+        }
+        pending.computeIfAbsent(date, d -> new ConcurrentHashMap<>())
+                .computeIfAbsent(field, f -> new LongAdder())
+                .add(delta);
+    }
+
+    /**
+     * 每秒把本地增量批量刷新到redis，刷新失败时放回本地，下次继续刷新
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void flush() {
+        LocalDate today = LocalDate.now();
+        pending.forEach((date, fields) -> {
+            if (date.isBefore(today)) {
+                //跨天后旧日期不会再有新的增量
+                pending.remove(date, fields);
+            }
+            flush(date, fields);
+        });
+    }
+
+    /**
+     * 把某天的本地增量刷新到redis，计数器还未初始化时丢弃
+     * @param date
+     * @param fields
+     * @return 是否刷新成功，失败时增量已放回本地
+     */
+    private boolean flush(LocalDate date, Map<String, LongAdder> fields) {
+        Map<String, Long> deltas = new HashMap<>();
+        fields.forEach((field, adder) -> {
+            long delta = adder.sumThenReset();
+            if (delta != 0) {
+                deltas.put(field, delta);
+            }
+        });
+        if (deltas.isEmpty()) {
+            return true;
+        }
+        //本批增量都在这个时间之前累加
+        long flushedAt = System.currentTimeMillis();
+
+        String key = key(date);
+        List<String> args = new ArrayList<>(deltas.size() * 2 + 2);
+        args.add(String.valueOf(KEY_EXPIRE_SECONDS));
+        args.add(String.valueOf(flushedAt));
+        deltas.forEach((field, delta) -> {
+            args.add(field);
+            args.add(String.valueOf(delta));
+        });
+        try {
+            stringRedisTemplate.execute(FLUSH_SCRIPT, Collections.singletonList(key), args.toArray());
+            return true;
+        } catch (Exception e) {
+            log.error("工作台计数器刷新失败：{}", key, e);
+            deltas.forEach((field, delta) -> add(date, field, delta));
+            return false;
+        }
+    }
+
+    /**
+     * 查询某天的计数器，包含本节点还未刷新到redis的增量
+     * @param date
+     * @return
+     */
+    private Map<String, Long> getCounters(LocalDate date) {
+        String key = key(date);
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(key);
+        if (!entries.containsKey(SEEDED)) {
+            seed(date);
+            entries = stringRedisTemplate.opsForHash().entries(key);
+        }
+
+        Map<String, Long> counters = new HashMap<>();
+        entries.forEach((field, value) -> counters.put((String) field, Long.valueOf((String) value)));
+        Map<String, LongAdder> fields = pending.get(date);
+        if (fields != null) {
+            fields.forEach((field, adder) -> counters.merge(field, adder.sum(), Long::sum));
+        }
+        return counters;
+    }
+
+    /**
+     * 按订单表和用户表初始化某天的计数器，一天只需要执行一次
+     * 查询数据库之前先清空本节点的增量(计数器未初始化，刷新时会被丢弃)，这些变化已经包含在数据库的统计结果中；
+     * 计数器记录查询数据库的时间，各节点在这之前累加的增量刷新时被丢弃
+     * @param date
+     */
+    private void seed(LocalDate date) {
+        Map<String, LongAdder> fields = pending.get(date);
+        if (fields != null && !flush(date, fields)) {
+            //增量没有处理掉时不初始化，下次查询再试
+            return;
+        }
+        long seededAt = System.currentTimeMillis();
+
+        LocalDateTime begin = date.atStartOfDay();
+        LocalDateTime end = begin.plusDays(1);
+
+        Map<String, Long> counters = new HashMap<>();
+        long all = 0;
+        for (Map<String, Object> row : orderMapper.countByStatusAndTime(begin, end)) {
+            Integer status = ((Number) row.get("status")).intValue();
+            long number = ((Number) row.get("number")).longValue();
+            all += number;
+            String field = statusField(status);
+            if (field != null) {
+                counters.put(field, number);
+            }
+            if (Orders.COMPLETED.equals(status)) {
+                counters.put(TURNOVER, ((BigDecimal) row.get("amount")).movePointRight(2).longValue());
+            }
+        }
+        counters.put(ALL, all);
+        counters.put(NEW_USERS, userMapper.countByCreateTime(begin, end).longValue());
+        counters.put(SEEDED, seededAt);
+
+        List<String> args = new ArrayList<>(counters.size() * 2 + 1);
+        args.add(String.valueOf(KEY_EXPIRE_SECONDS));
+        counters.forEach((field, value) -> {
+            args.add(field);
+            args.add(String.valueOf(value));
+        });
+        Long seeded = stringRedisTemplate.execute(SEED_SCRIPT, Collections.singletonList(key(date)), args.toArray());
+        if (seeded != null && seeded == 1) {
+            log.info("工作台计数器初始化：{} {}", date, counters);
+        }
+    }
+
+    private static String key(LocalDate date) {
+        return KEY_PREFIX + date.format(KEY_DATE_FORMATTER);
+    }
+}
@@ -0,0 +1,29 @@
+package com.sky.task;
+
+import com.sky.utils.HttpClientUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+@Slf4j
+@Component
+public class HttpClientStatsTask {
+
+    private long lastRequestCount;
+
+    /**
+     * 每分钟记录一次http请求和连接池统计，期间没有发起请求时不记录
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void logStats() {
+        Map<String, Long> stats = HttpClientUtil.getStats();
+        long requestCount = stats.get("requestCount");
+        if (requestCount == lastRequestCount) {
+            return;
+        }
+        lastRequestCount = requestCount;
+        log.info("http请求统计：{}", stats);
+    }
+}
@@ -2,34 +2,82 @@ package com.sky.task;
 
 import com.sky.entity.Orders;
 import com.sky.mapper.OrderMapper;
+import com.sky.order.OrderStatusCounter;
+import com.sky.order.OrderTimeoutQueue;
+import com.sky.service.ReportService;
+import com.sky.service.WorkspaceService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Component
 public class OrderTask {
 
+    //对账取消超时订单每批处理的数量
+    private static final int TIMEOUT_BATCH_SIZE = 500;
+
+    //派送中订单每批处理的数量
+    private static final int DELIVERY_BATCH_SIZE = 500;
+
     @Autowired
     OrderMapper orderMapper;
+    @Autowired
+    ReportService reportService;
+    @Autowired
+    WorkspaceService workspaceService;
+    @Autowired
+    OrderStatusCounter orderStatusCounter;
+    @Autowired
+    TransactionTemplate transactionTemplate;
 
     /**
-     * 处理超时订单，超时时间是15分钟，所以这里每分钟执行一次判断即可
+     * 处理超时订单，超时时间是15分钟
+     * 超时订单由OrderTimeoutQueue按到期时间准时取消，这里只作为兜底对账，
+     * 处理加入延时队列失败或取消失败的订单，所以每10分钟执行一次即可
+     * 漏掉的订单可能是redis不可用期间下的单，下单时间距今可能已有几小时甚至几天，
+     * 所以按id分批查询，按下单日期分组取消，以便把取消数量计入对应日期的工作台数据
      */
-    @Scheduled(cron = "0 * * * * ?")
+    @Scheduled(cron = "0 0/10 * * * ?")
     public void processTimeOutOrder() {
         //处理超时订单，判断订单状态是否是待支付状态，判断下单时间距离现在的时间是否已经超过15分钟
-        LocalDateTime time = LocalDateTime.now().plusMinutes(-15);
-        List<Orders> orders = orderMapper.selectOrderByStatusAndTime(Orders.PENDING_PAYMENT, time);
-        for (Orders order : orders) {
-            order.setStatus(Orders.CANCELLED);
-            order.setCancelTime(LocalDateTime.now());
-            order.setCancelReason("订单超时，自动取消");
-            orderMapper.update(order);
+        LocalDateTime time = LocalDateTime.now().plusMinutes(-OrderTimeoutQueue.PAY_TIMEOUT_MINUTES);
+
+        long lastId = 0;
+        int total = 0;
+        List<Orders> ordersList;
+        do {
+            ordersList = orderMapper.selectOrderTimesByStatusAndTime(Orders.PENDING_PAYMENT, time, lastId, TIMEOUT_BATCH_SIZE);
+            if (ordersList.isEmpty()) {
+                break;
+            }
+            Map<LocalDate, List<Long>> orderIdMap = new HashMap<>();
+            for (Orders orders : ordersList) {
+                orderIdMap.computeIfAbsent(orders.getOrderTime().toLocalDate(), d -> new ArrayList<>()).add(orders.getId());
+            }
+            for (Map.Entry<LocalDate, List<Long>> entry : orderIdMap.entrySet()) {
+                //一条update批量取消，只会取消仍处于待付款状态的订单
+                int count = orderMapper.cancelByIds(entry.getValue(), Orders.PENDING_PAYMENT,
+                        OrderTimeoutQueue.CANCEL_REASON, LocalDateTime.now());
+                workspaceService.ordersCancelled(entry.getKey(), Orders.PENDING_PAYMENT, count);
+                orderStatusCounter.changed(Orders.PENDING_PAYMENT, Orders.CANCELLED, count);
+                total += count;
+            }
+            lastId = ordersList.get(ordersList.size() - 1).getId();
+        } while (ordersList.size() == TIMEOUT_BATCH_SIZE);
+
+        if (total > 0) {
+            log.warn("对账取消超时订单：{}", total);
         }
     }
 
@@ -40,11 +88,61 @@ public class OrderTask {
     @Scheduled(cron = "0 0 1 * * ?")
     public void processDeliveryOrder() {
         log.info("开始处理派送中订单...");
+        long start = System.currentTimeMillis();
         LocalDateTime time = LocalDateTime.now().plusHours(-1);
-        List<Orders> orders = orderMapper.selectOrderByStatusAndTime(Orders.DELIVERY_IN_PROGRESS, time);
-        for (Orders order : orders) {
-            order.setStatus(Orders.COMPLETED);
-            orderMapper.update(order);
+        LocalDateTime deliveryTime = LocalDateTime.now();
+
+        //按id分批查询，每批一条update批量完成，避免一次性将所有订单加载到内存
+        long lastId = 0;
+        int total = 0;
+        List<Long> ids;
+        do {
+            ids = orderMapper.selectIdsByStatusAndTime(Orders.DELIVERY_IN_PROGRESS, time, lastId, DELIVERY_BATCH_SIZE);
+            if (ids.isEmpty()) {
+                break;
+            }
+            int count = completeBatch(ids, deliveryTime);
+            orderStatusCounter.changed(Orders.DELIVERY_IN_PROGRESS, Orders.COMPLETED, count);
+            total += count;
+            lastId = ids.get(ids.size() - 1);
+        } while (ids.size() == DELIVERY_BATCH_SIZE);
+
+        long duration = System.currentTimeMillis() - start;
+        log.info("派送中订单处理完成，数量：{}，耗时：{}ms，速度：{}条/秒",
+                total, duration, duration == 0 ? total : total * 1000L / duration);
+    }
+
+    /**
+     * 一条update批量完成订单，并在同一个事务中累加每日营业额和商品销量，这些订单都是前一天的，不影响工作台的今日数据
+     * 查询之后部分订单可能已被商家手动完成或取消，更新数量不一致时回滚，改为逐个完成，只累加实际完成的订单
+     * @param ids
+     * @param deliveryTime
+     * @return 实际完成的订单数量
+     */
+    private int completeBatch(List<Long> ids, LocalDateTime deliveryTime) {
+        Integer count = transactionTemplate.execute(status -> {
+            int completed = orderMapper.completeByIds(ids, deliveryTime);
+            if (completed != ids.size()) {
+                status.setRollbackOnly();
+                return null;
+            }
+            reportService.ordersCompleted(ids);
+            return completed;
+        });
+        if (count != null) {
+            return count;
         }
+
+        log.info("部分派送中订单状态已变化，逐个完成：{}", ids.size());
+        List<Long> completedIds = new ArrayList<>(ids.size());
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Long id : ids) {
+                if (orderMapper.completeByIds(Collections.singletonList(id), deliveryTime) == 1) {
+                    completedIds.add(id);
+                }
+            }
+            reportService.ordersCompleted(completedIds);
+        });
+        return completedIds.size();
     }
 }
@@ -0,0 +1,28 @@
+package com.sky.task;
+
+import com.sky.service.ReportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+@Slf4j
+@Component
+public class ReportTask {
+
+    @Autowired
+    private ReportService reportService;
+
+    /**
+     * 每日汇总数据平时由订单状态变化增量更新，每天凌晨两点(派送中订单自动完成之后)按订单表重算前一天的数据，
+     * 修正增量更新过程中可能出现的偏差
+     */
+    @Scheduled(cron = "0 0 2 * * ?")
+    public void rebuildYesterday() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        log.info("开始重算每日汇总数据：{}", yesterday);
+        reportService.rebuild(yesterday, yesterday);
+    }
+}
@@ -0,0 +1,174 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.properties.WebSocketProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 管理端订单消息推送
+ * 消息先通过redis发布订阅广播到所有节点，各节点再推送给自己持有的管理端连接；
+ * 推送只是放入每个连接自己的有界队列，由发送线程异步写出，队列满说明客户端接收太慢，直接断开，不影响其他连接
+ */
+@Component
+@Slf4j
+public class OrderPushServer extends TextWebSocketHandler implements MessageListener {
+
+    //订单推送消息的频道
+    public static final String CHANNEL = "order_push";
+
+    //消息类型 1来单提醒(已支付) 2客户催单 3新订单(待支付)
+    public static final int ORDER_PAID = 1;
+    public static final int REMINDER = 2;
+    public static final int ORDER_CREATED = 3;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+
+    //本节点持有的连接，连接id -> 连接
+    private final Map<String, PushSession> sessions = new ConcurrentHashMap<>();
+
+    private ExecutorService sendExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        sendExecutor = Executors.newFixedThreadPool(webSocketProperties.getSendThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "ws-push-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        sendExecutor.shutdownNow();
+    }
+
+    /**
+     * 向所有节点的管理端推送订单消息，推送失败不影响业务
+     * @param type 消息类型
+     * @param orderId
+     * @param orderNumber
+     */
+    public void push(int type, Long orderId, String orderNumber) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("type", type);
+        map.put("orderId", orderId);
+        map.put("content", "订单号：" + orderNumber);
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, JSON.toJSONString(map));
+        } catch (Exception e) {
+            log.error("订单消息推送失败：{}", map, e);
+        }
+    }
+
+    /**
+     * 收到广播的订单消息，推送给本节点的所有连接，这里只入队不做网络写出
+     * @param message
+     * @param pattern
+     */
+    public void onMessage(Message message, byte[] pattern) {
+        TextMessage textMessage = new TextMessage(new String(message.getBody(), StandardCharsets.UTF_8));
+        for (PushSession pushSession : sessions.values()) {
+            pushSession.offer(textMessage);
+        }
+    }
+
+    public void afterConnectionEstablished(WebSocketSession session) {
+        log.info("管理端连接建立：{} {}", session.getId(), session.getRemoteAddress());
+        sessions.put(session.getId(), new PushSession(session));
+    }
+
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        log.info("管理端连接断开：{} {}", session.getId(), status);
+        sessions.remove(session.getId());
+    }
+
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.warn("管理端连接异常：{}", session.getId(), exception);
+        close(session, CloseStatus.SERVER_ERROR);
+    }
+
+    private void close(WebSocketSession session, CloseStatus status) {
+        sessions.remove(session.getId());
+        try {
+            session.close(status);
+        } catch (IOException e) {
+            log.debug("关闭管理端连接失败：{}", session.getId(), e);
+        }
+    }
+
+    /**
+     * 一个管理端连接及其待发送的消息
+     * 同一时刻最多只有一个发送线程在写这个连接，保证消息顺序，也避免并发写同一个连接
+     */
+    private class PushSession implements Runnable {
+
+        private final WebSocketSession session;
+        private final BlockingQueue<TextMessage> queue;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private PushSession(WebSocketSession session) {
+            this.session = session;
+            this.queue = new ArrayBlockingQueue<>(webSocketProperties.getSendQueueCapacity());
+        }
+
+        private void offer(TextMessage message) {
+            if (!queue.offer(message)) {
+                log.warn("管理端接收消息过慢，断开连接：{}", session.getId());
+                close(session, CloseStatus.SESSION_NOT_RELIABLE);
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                sendExecutor.execute(this);
+            }
+        }
+
+        public void run() {
+            try {
+                TextMessage message;
+                while ((message = queue.poll()) != null) {
+                    session.sendMessage(message);
+                }
+            } catch (Exception e) {
+                log.warn("管理端消息发送失败，断开连接：{}", session.getId(), e);
+                close(session, CloseStatus.SERVER_ERROR);
+            } finally {
+                scheduled.set(false);
+                //释放标记后可能又有新消息入队
+                if (!queue.isEmpty() && session.isOpen()) {
+                    schedule();
+                }
+            }
+        }
+    }
+}
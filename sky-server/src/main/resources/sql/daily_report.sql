@@ -0,0 +1,19 @@
+-- 每日经营数据汇总表，由订单状态变化增量更新，每天凌晨按订单表重算前一天的数据
+create table if not exists sky_take_out.daily_report
+(
+    report_date       date           not null comment '统计日期',
+    turnover          decimal(12, 2) not null default 0 comment '营业额',
+    order_count       int            not null default 0 comment '订单数',
+    valid_order_count int            not null default 0 comment '有效订单数',
+    new_users         int            not null default 0 comment '新增用户数',
+    primary key (report_date)
+) comment '每日经营数据汇总';
+
+-- 每日商品销量汇总表，用于销量排名
+create table if not exists sky_take_out.daily_sales
+(
+    report_date date        not null comment '统计日期',
+    name        varchar(32) not null comment '商品名称',
+    number      int         not null default 0 comment '销量',
+    primary key (report_date, name)
+) comment '每日商品销量汇总';
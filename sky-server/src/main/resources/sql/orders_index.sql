@@ -0,0 +1,5 @@
+-- 按状态分组统计订单数量时只扫描该索引，不回表；按状态分页查询订单id时也可以直接按id有序读取
+create index idx_status on sky_take_out.orders (status);
+
+-- 按下单时间范围查询订单(工作台计数器初始化、报表导出)
+create index idx_order_time on sky_take_out.orders (order_time);
@@ -0,0 +1,19 @@
+-- 退款任务表，取消订单时和订单状态在同一个事务中写入，由后台线程调用微信退款接口并失败重试
+create table if not exists sky_take_out.refund_task
+(
+    id              bigint         not null auto_increment comment '主键',
+    order_id        bigint         not null comment '订单id',
+    out_trade_no    varchar(50)    not null comment '商户订单号',
+    out_refund_no   varchar(50)    not null comment '商户退款单号',
+    refund_amount   decimal(10, 2) not null comment '退款金额',
+    total_amount    decimal(10, 2) not null comment '原订单金额',
+    status          int            not null default 0 comment '退款状态 0待退款 1退款成功 2退款失败',
+    retry_count     int            not null default 0 comment '已重试次数',
+    next_retry_time datetime       not null comment '下次执行时间',
+    last_error      varchar(255)            default null comment '最近一次失败原因',
+    create_time     datetime       not null comment '创建时间',
+    update_time     datetime       not null comment '更新时间',
+    primary key (id),
+    unique key uk_out_refund_no (out_refund_no),
+    key idx_status_next_retry_time (status, next_retry_time)
+) comment '退款任务';
@@ -0,0 +1,22 @@
+-- 合并同一用户同一商品(菜品+口味或套餐)的重复购物车记录，数量累加到id最小的一条
+update sky_take_out.shopping_cart c
+    join (select min(id) id, sum(number) number
+          from sky_take_out.shopping_cart
+          group by user_id, ifnull(dish_id, 0), ifnull(setmeal_id, 0), ifnull(dish_flavor, '')
+          having count(*) > 1) d on c.id = d.id
+set c.number = d.number;
+
+delete c
+from sky_take_out.shopping_cart c
+         join sky_take_out.shopping_cart k
+              on c.user_id = k.user_id
+                  and ifnull(c.dish_id, 0) = ifnull(k.dish_id, 0)
+                  and ifnull(c.setmeal_id, 0) = ifnull(k.setmeal_id, 0)
+                  and ifnull(c.dish_flavor, '') = ifnull(k.dish_flavor, '')
+                  and c.id > k.id;
+
+-- 唯一索引中的null值互不冲突，用生成列把商品标识统一为非null的字符串，再建立(用户, 商品)唯一索引
+alter table sky_take_out.shopping_cart
+    add column item_key varchar(100) as (concat(ifnull(dish_id, 0), ':', ifnull(setmeal_id, 0), ':',
+                                                ifnull(dish_flavor, ''))) stored comment '商品标识',
+    add unique key uk_user_item (user_id, item_key);
@@ -0,0 +1,2 @@
+-- 按注册时间统计用户数量(用户统计的累计用户数、工作台新增用户数)
+create index idx_create_time on sky_take_out.user (create_time);
@@ -0,0 +1,96 @@
+package com.sky.aspect;
+
+import com.sky.annotation.AutoFill;
+import com.sky.constant.AutoFillConstant;
+import com.sky.context.BaseContext;
+import com.sky.entity.Employee;
+import com.sky.enumeration.OperationType;
+import com.sky.mapper.EmployeeMapper;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Method;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 公共字段自动填充的基准测试，插入一个员工
+ * cached：缓存的MethodHandle；reflective：原来的做法，每次调用都getDeclaredMethod查找4个set方法再反射调用
+ * 运行main方法，或 mvn test-compile 后用测试classpath运行
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutoFillAspectBenchmark {
+
+    private AutoFillAspect autoFillAspect;
+
+    private Employee employee;
+
+    private JoinPoint joinPoint;
+
+    @Setup
+    public void setUp() {
+        BaseContext.setCurrentId(1L);
+        autoFillAspect = new AutoFillAspect();
+        employee = new Employee();
+        joinPoint = AutoFillAspectTest.joinPoint(AutoFillAspectTest.method(EmployeeMapper.class, "insert", Employee.class), employee);
+    }
+
+    @Benchmark
+    public Employee cached() {
+        autoFillAspect.autoFill(joinPoint);
+        return employee;
+    }
+
+    @Benchmark
+    public Employee reflective() {
+        reflectiveFill(joinPoint);
+        return employee;
+    }
+
+    /**
+     * 原来的填充逻辑，不含日志
+     */
+    private static void reflectiveFill(JoinPoint joinPoint) {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        OperationType operationType = signature.getMethod().getAnnotation(AutoFill.class).value();
+        Object entity = joinPoint.getArgs()[0];
+        LocalDateTime ldt = LocalDateTime.now();
+        Long currentid = BaseContext.getCurrentId();
+        try {
+            if (operationType == OperationType.INSERT) {
+                Method setCreateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class);
+                Method setCreateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_USER, Long.class);
+                Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
+                Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER, Long.class);
+                setCreateTime.invoke(entity, ldt);
+                setCreateUser.invoke(entity, currentid);
+                setUpdateTime.invoke(entity, ldt);
+                setUpdateUser.invoke(entity, currentid);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AutoFillAspectBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,136 @@
+package com.sky.aspect;
+
+import com.sky.annotation.AutoFill;
+import com.sky.context.BaseContext;
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Employee;
+import com.sky.enumeration.OperationType;
+import com.sky.mapper.EmployeeMapper;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AutoFillAspectTest {
+
+    /**
+     * 批量插入的mapper方法，第一个参数为实体集合或数组
+     */
+    interface BatchMapper {
+
+        @AutoFill(OperationType.INSERT)
+        void insertBatch(List<Employee> employees);
+
+        @AutoFill(OperationType.UPDATE)
+        void updateBatch(Employee[] employees);
+
+        //口味没有公共字段
+        @AutoFill(OperationType.INSERT)
+        void insertFlavor(DishFlavor flavor);
+    }
+
+    private final AutoFillAspect autoFillAspect = new AutoFillAspect();
+
+    @BeforeEach
+    void setUp() {
+        BaseContext.setCurrentId(7L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    /**
+     * 只实现切面用到的方法：getSignature().getMethod() 和 getArgs()
+     * @param method 被拦截的mapper方法
+     * @param args
+     * @return
+     */
+    static JoinPoint joinPoint(Method method, Object... args) {
+        MethodSignature signature = (MethodSignature) Proxy.newProxyInstance(AutoFillAspectTest.class.getClassLoader(),
+                new Class<?>[]{MethodSignature.class}, (proxy, m, a) -> {
+                    switch (m.getName()) {
+                        case "getMethod":
+                            return method;
+                        case "getName":
+                            return method.getName();
+                        default:
+                            throw new UnsupportedOperationException(m.getName());
+                    }
+                });
+        return (JoinPoint) Proxy.newProxyInstance(AutoFillAspectTest.class.getClassLoader(),
+                new Class<?>[]{JoinPoint.class}, (proxy, m, a) -> {
+                    switch (m.getName()) {
+                        case "getSignature":
+                            return signature;
+                        case "getArgs":
+                            return args;
+                        default:
+                            throw new UnsupportedOperationException(m.getName());
+                    }
+                });
+    }
+
+    static Method method(Class<?> type, String name, Class<?> parameterType) {
+        try {
+            return type.getMethod(name, parameterType);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void insertFillsAllFields() {
+        Employee employee = new Employee();
+        autoFillAspect.autoFill(joinPoint(method(EmployeeMapper.class, "insert", Employee.class), employee));
+
+        assertNotNull(employee.getCreateTime());
+        assertEquals(employee.getCreateTime(), employee.getUpdateTime());
+        assertEquals(7L, employee.getCreateUser());
+        assertEquals(7L, employee.getUpdateUser());
+    }
+
+    @Test
+    void updateFillsUpdateFieldsOnly() {
+        Employee employee = new Employee();
+        autoFillAspect.autoFill(joinPoint(method(EmployeeMapper.class, "update", Employee.class), employee));
+
+        assertNull(employee.getCreateTime());
+        assertNull(employee.getCreateUser());
+        assertNotNull(employee.getUpdateTime());
+        assertEquals(7L, employee.getUpdateUser());
+    }
+
+    @Test
+    void collectionAndArrayArgumentsAreFilledPerElement() {
+        List<Employee> inserted = Arrays.asList(new Employee(), null, new Employee());
+        autoFillAspect.autoFill(joinPoint(method(BatchMapper.class, "insertBatch", List.class), inserted));
+        assertEquals(7L, inserted.get(0).getCreateUser());
+        assertEquals(7L, inserted.get(2).getCreateUser());
+
+        Employee[] updated = {new Employee(), new Employee()};
+        autoFillAspect.autoFill(joinPoint(method(BatchMapper.class, "updateBatch", Employee[].class), (Object) updated));
+        assertEquals(7L, updated[0].getUpdateUser());
+        assertEquals(7L, updated[1].getUpdateUser());
+        assertNull(updated[1].getCreateUser());
+    }
+
+    @Test
+    void entityWithoutAuditFieldsIsSkipped() {
+        DishFlavor flavor = new DishFlavor();
+        autoFillAspect.autoFill(joinPoint(method(BatchMapper.class, "insertFlavor", DishFlavor.class), flavor));
+
+        assertNull(flavor.getDishId());
+    }
+}
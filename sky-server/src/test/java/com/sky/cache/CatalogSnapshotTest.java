@@ -0,0 +1,97 @@
+package com.sky.cache;
+
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CatalogSnapshotTest {
+
+    /**
+     * 按给定的菜品、套餐加载快照，数据库中的数据按id升序返回
+     * @param dishes
+     * @param setmeals
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static CatalogSnapshot loaded(List<Dish> dishes, List<Setmeal> setmeals) {
+        DishMapper dishMapper = mock(DishMapper.class);
+        SetmealMapper setmealMapper = mock(SetmealMapper.class);
+        when(dishMapper.listAll()).thenReturn(dishes);
+        when(setmealMapper.listAll()).thenReturn(setmeals);
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("catalog_version")).thenReturn("1");
+
+        CatalogSnapshot catalogSnapshot = new CatalogSnapshot();
+        ReflectionTestUtils.setField(catalogSnapshot, "dishMapper", dishMapper);
+        ReflectionTestUtils.setField(catalogSnapshot, "setmealMapper", setmealMapper);
+        ReflectionTestUtils.setField(catalogSnapshot, "stringRedisTemplate", stringRedisTemplate);
+        catalogSnapshot.refresh();
+        return catalogSnapshot;
+    }
+
+    /**
+     * 起售商品的价格预先换算为分，停售商品为-1，都不查询数据库
+     */
+    @Test
+    void pricesComeFromPrecomputedTable() {
+        CatalogSnapshot catalogSnapshot = loaded(Arrays.asList(
+                Dish.builder().id(1L).price(new BigDecimal("18.00")).status(StatusConstant.ENABLE).build(),
+                Dish.builder().id(5L).price(new BigDecimal("0.015")).status(StatusConstant.ENABLE).build(),
+                Dish.builder().id(9L).price(new BigDecimal("6")).status(StatusConstant.DISABLE).build()),
+                Collections.singletonList(Setmeal.builder().id(3L).price(new BigDecimal("48.5")).status(StatusConstant.ENABLE).build()));
+        DishMapper dishMapper = (DishMapper) ReflectionTestUtils.getField(catalogSnapshot, "dishMapper");
+
+        assertEquals(1800, catalogSnapshot.getDishPrice(1L));
+        assertEquals(2, catalogSnapshot.getDishPrice(5L));
+        assertEquals(-1, catalogSnapshot.getDishPrice(9L));
+        assertEquals(4850, catalogSnapshot.getSetmealPrice(3L));
+        verify(dishMapper, never()).getById(anyLong());
+    }
+
+    @Test
+    void missingIdFallsBackToDatabase() {
+        CatalogSnapshot catalogSnapshot = loaded(Collections.emptyList(), Collections.emptyList());
+        DishMapper dishMapper = (DishMapper) ReflectionTestUtils.getField(catalogSnapshot, "dishMapper");
+        Dish dish = Dish.builder().id(7L).price(new BigDecimal("12")).status(StatusConstant.ENABLE).build();
+        when(dishMapper.getById(7L)).thenReturn(dish);
+
+        assertEquals(1200, catalogSnapshot.getDishPrice(7L));
+        assertSame(dish, catalogSnapshot.getDish(7L));
+        assertEquals(-1, catalogSnapshot.getDishPrice(8L));
+    }
+
+    /**
+     * 版本号没有变化时不重新加载
+     */
+    @Test
+    void refreshReloadsOnlyWhenVersionChanges() {
+        CatalogSnapshot catalogSnapshot = loaded(Collections.emptyList(), Collections.emptyList());
+        DishMapper dishMapper = (DishMapper) ReflectionTestUtils.getField(catalogSnapshot, "dishMapper");
+
+        catalogSnapshot.refresh();
+
+        verify(dishMapper, times(1)).listAll();
+    }
+}
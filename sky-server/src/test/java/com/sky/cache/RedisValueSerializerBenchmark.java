@@ -0,0 +1,68 @@
+package com.sky.cache;
+
+import com.sky.vo.DishVO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * redis value序列化方式的基准测试：List<DishVO>的编码、解码耗时，启动时输出各方式的数据大小
+ * 运行main方法，或 mvn test-compile 后用测试classpath运行 org.openjdk.jmh.Main RedisValueSerializerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisValueSerializerBenchmark {
+
+    @Param({RedisValueSerializer.JSON, RedisValueSerializer.SMILE, RedisValueSerializer.JDK})
+    public String type;
+
+    //一个分类下的菜品数
+    @Param({"10", "50"})
+    public int dishes;
+
+    private RedisValueSerializer serializer;
+
+    private List<DishVO> value;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        serializer = RedisValueSerializer.of(type);
+        value = RedisValueSerializerTest.dishes(dishes);
+        bytes = serializer.serialize(value);
+        System.out.printf("%n序列化方式：%s，菜品数：%d，数据大小：%d字节%n", type, dishes, bytes.length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return serializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return serializer.deserialize(bytes);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RedisValueSerializerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,110 @@
+package com.sky.cache;
+
+import com.sky.entity.DishFlavor;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RedisValueSerializerTest {
+
+    static List<DishVO> dishes(int count) {
+        List<DishVO> list = new ArrayList<>(count);
+        for (long id = 1; id <= count; id++) {
+            List<DishFlavor> flavors = new ArrayList<>();
+            flavors.add(DishFlavor.builder().id(id * 10).dishId(id).name("辣度").value("[\"不辣\",\"微辣\",\"中辣\",\"重辣\"]").build());
+            flavors.add(DishFlavor.builder().id(id * 10 + 1).dishId(id).name("温度").value("[\"热饮\",\"常温\",\"去冰\"]").build());
+            list.add(DishVO.builder()
+                    .id(id)
+                    .name("菜品" + id)
+                    .categoryId(11L)
+                    .price(new BigDecimal("38.00"))
+                    .image("https://sky-take-out.oss-cn-beijing.aliyuncs.com/" + id + ".png")
+                    .description("招牌菜品" + id)
+                    .status(1)
+                    .updateTime(LocalDateTime.of(2024, 5, 1, 12, 30, 0))
+                    .categoryName("热菜")
+                    .flavors(flavors)
+                    .build());
+        }
+        return list;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {RedisValueSerializer.JSON, RedisValueSerializer.SMILE, RedisValueSerializer.JDK})
+    void roundTripsDishList(String type) {
+        RedisValueSerializer serializer = RedisValueSerializer.of(type);
+        List<DishVO> dishes = dishes(20);
+
+        Object value = serializer.deserialize(serializer.serialize(dishes));
+
+        assertEquals(dishes, value);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {RedisValueSerializer.JSON, RedisValueSerializer.SMILE, RedisValueSerializer.JDK})
+    void roundTripsShopStatusAndEmptyList(String type) {
+        RedisValueSerializer serializer = RedisValueSerializer.of(type);
+
+        assertEquals(1, serializer.deserialize(serializer.serialize(1)));
+        assertEquals(Collections.emptyList(), serializer.deserialize(serializer.serialize(new ArrayList<>())));
+        assertNull(serializer.deserialize(null));
+    }
+
+    /**
+     * 切换为json后，之前jdk序列化写入的数据仍能读取
+     */
+    @Test
+    void readsLegacyJdkValues() {
+        byte[] legacy = RedisValueSerializer.of(RedisValueSerializer.JDK).serialize(dishes(3));
+
+        assertEquals(dishes(3), RedisValueSerializer.of(RedisValueSerializer.JSON).deserialize(legacy));
+        assertEquals(dishes(3), RedisValueSerializer.of(RedisValueSerializer.SMILE).deserialize(legacy));
+    }
+
+    /**
+     * redis中的数据指定了允许范围以外的类型时拒绝反序列化
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {RedisValueSerializer.JSON, RedisValueSerializer.SMILE, RedisValueSerializer.JDK})
+    void rejectsTypesOutsideAllowList(String type) {
+        RedisValueSerializer serializer = RedisValueSerializer.of(type);
+        byte[] bytes = serializer.serialize(new File("/tmp/gadget"));
+
+        assertThrows(SerializationException.class, () -> serializer.deserialize(bytes));
+    }
+
+    @Test
+    void rejectsJsonNamingArbitraryClass() {
+        byte[] bytes = ("[\"org.springframework.context.support.ClassPathXmlApplicationContext\","
+                + "\"http://127.0.0.1/evil.xml\"]").getBytes();
+
+        assertThrows(SerializationException.class,
+                () -> RedisValueSerializer.of(RedisValueSerializer.JSON).deserialize(bytes));
+    }
+
+    @Test
+    void jdkAllowList() {
+        assertTrue(RedisValueSerializer.isJdkAllowed("java.util.ArrayList"));
+        assertTrue(RedisValueSerializer.isJdkAllowed("java.lang.Integer"));
+        assertTrue(RedisValueSerializer.isJdkAllowed("[B"));
+        assertTrue(RedisValueSerializer.isJdkAllowed("[Lcom.sky.vo.DishVO;"));
+        assertFalse(RedisValueSerializer.isJdkAllowed("java.io.File"));
+        assertFalse(RedisValueSerializer.isJdkAllowed("[Ljava.io.File;"));
+        assertFalse(RedisValueSerializer.isJdkAllowed("org.apache.commons.collections.functors.InvokerTransformer"));
+    }
+}
@@ -0,0 +1,98 @@
+package com.sky.interceptor;
+
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.context.BaseContext;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.method.HandlerMethod;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 管理端拦截器每个请求的开销
+ * cached：使用JwtTokenVerifier，令牌校验结果已缓存；parse：原来的做法，每个请求都用秘钥字符串解析和验签
+ * 运行main方法，或 mvn test-compile 后用测试classpath运行
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtTokenAdminInterceptorBenchmark {
+
+    private JwtProperties jwtProperties;
+
+    private JwtTokenAdminInterceptor interceptor;
+
+    private MockHttpServletRequest request;
+
+    private HandlerMethod handler;
+
+    @Setup
+    public void setUp() throws Exception {
+        jwtProperties = JwtTokenVerifierTest.properties();
+
+        //吊销记录只在缓存未命中时查询一次，返回未吊销
+        ValueOperations<?, ?> valueOperations = (ValueOperations<?, ?>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ValueOperations.class}, (proxy, method, args) -> Arrays.asList(null, null));
+        StringRedisTemplate stringRedisTemplate = new StringRedisTemplate() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public ValueOperations<String, String> opsForValue() {
+                return (ValueOperations<String, String>) valueOperations;
+            }
+        };
+
+        JwtTokenVerifier jwtTokenVerifier = new JwtTokenVerifier();
+        ReflectionTestUtils.setField(jwtTokenVerifier, "jwtProperties", jwtProperties);
+        ReflectionTestUtils.setField(jwtTokenVerifier, "stringRedisTemplate", stringRedisTemplate);
+        jwtTokenVerifier.init();
+
+        interceptor = new JwtTokenAdminInterceptor();
+        ReflectionTestUtils.setField(interceptor, "jwtProperties", jwtProperties);
+        ReflectionTestUtils.setField(interceptor, "jwtTokenVerifier", jwtTokenVerifier);
+
+        request = new MockHttpServletRequest();
+        request.addHeader(jwtProperties.getAdminTokenName(), JwtTokenVerifierTest.adminToken(1L));
+        handler = new HandlerMethod(this, "cached");
+    }
+
+    @Benchmark
+    public boolean cached() {
+        return interceptor.preHandle(request, new MockHttpServletResponse(), handler);
+    }
+
+    @Benchmark
+    public boolean parse() {
+        String token = request.getHeader(jwtProperties.getAdminTokenName());
+        Claims claims = JwtUtil.parseJWT(jwtProperties.getAdminSecretKey(), token);
+        BaseContext.setCurrentId(Long.valueOf(claims.get(JwtClaimsConstant.EMP_ID).toString()));
+        return true;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtTokenAdminInterceptorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
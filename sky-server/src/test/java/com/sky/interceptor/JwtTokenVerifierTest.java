@@ -0,0 +1,130 @@
+package com.sky.interceptor;
+
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class JwtTokenVerifierTest {
+
+    static final String ADMIN_SECRET = "itcast";
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+    @InjectMocks
+    private JwtTokenVerifier jwtTokenVerifier;
+
+    private final JwtProperties jwtProperties = properties();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(jwtTokenVerifier, "jwtProperties", jwtProperties);
+        jwtTokenVerifier.init();
+        lenient().when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    static JwtProperties properties() {
+        JwtProperties jwtProperties = new JwtProperties();
+        jwtProperties.setAdminSecretKey(ADMIN_SECRET);
+        jwtProperties.setAdminTtl(7200000);
+        jwtProperties.setAdminTokenName("token");
+        jwtProperties.setUserSecretKey("itheima");
+        jwtProperties.setUserTtl(7200000);
+        jwtProperties.setUserTokenName("authentication");
+        return jwtProperties;
+    }
+
+    static String adminToken(long empId) {
+        return adminToken(ADMIN_SECRET, empId);
+    }
+
+    static String adminToken(String secretKey, long empId) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtClaimsConstant.EMP_ID, empId);
+        return JwtUtil.createJWT(secretKey, 7200000, claims);
+    }
+
+    /**
+     * 同一个令牌只在第一次请求时查询吊销记录，之后直接使用本地缓存
+     */
+    @Test
+    void verifiedTokenIsCached() {
+        when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList(null, null));
+        String token = adminToken(1L);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1L, jwtTokenVerifier.verifyAdmin(token));
+        }
+        verify(valueOperations, times(1)).multiGet(anyList());
+    }
+
+    @Test
+    void revokedTokenIsRejected() {
+        when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList("1", null));
+
+        assertThrows(IllegalStateException.class, () -> jwtTokenVerifier.verifyAdmin(adminToken(1L)));
+    }
+
+    /**
+     * redis不可用时放行请求，但不缓存校验结果，下次请求重新检查吊销记录
+     */
+    @Test
+    void redisFailureIsNotCached() {
+        when(valueOperations.multiGet(anyList())).thenThrow(new RedisConnectionFailureException("down"));
+        String token = adminToken(1L);
+
+        assertEquals(1L, jwtTokenVerifier.verifyAdmin(token));
+        assertEquals(1L, jwtTokenVerifier.verifyAdmin(token));
+        verify(valueOperations, times(2)).multiGet(anyList());
+    }
+
+    /**
+     * 收到员工吊销通知后清理缓存，下次请求重新查询吊销记录
+     */
+    @Test
+    void employeeRevocationEvictsCachedTokens() {
+        String token = adminToken(1L);
+        when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList(null, null));
+        jwtTokenVerifier.verifyAdmin(token);
+
+        long revokedAt = System.currentTimeMillis();
+        byte[] body = ("e:1:" + revokedAt).getBytes(StandardCharsets.UTF_8);
+        jwtTokenVerifier.onMessage(new DefaultMessage(JwtTokenVerifier.CHANNEL.getBytes(StandardCharsets.UTF_8), body), null);
+        when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList(null, String.valueOf(revokedAt)));
+
+        assertThrows(IllegalStateException.class, () -> jwtTokenVerifier.verifyAdmin(token));
+    }
+
+    @Test
+    void tokenSignedWithOtherKeyIsRejected() {
+        String token = adminToken("other", 1L);
+
+        assertThrows(Exception.class, () -> jwtTokenVerifier.verifyAdmin(token));
+    }
+}
@@ -0,0 +1,102 @@
+package com.sky.order;
+
+import com.sky.cache.CatalogSnapshot;
+import com.sky.cache.CatalogSnapshotTest;
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Dish;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.entity.Setmeal;
+import com.sky.properties.PricingProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下单计价的基准测试，购物车1~50行，价格全部来自快照，不访问数据库
+ * 运行main方法，或 mvn test-compile 后用测试classpath运行
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderPricingBenchmark {
+
+    private static final int DISHES = 200;
+
+    private static final int SETMEALS = 50;
+
+    @Param({"1", "10", "50"})
+    public int lines;
+
+    private OrderPricing orderPricing;
+
+    private List<OrderDetail> orderDetails;
+
+    @Setup
+    public void setUp() {
+        //按id升序加载真实的快照，计价时二分查找预先计算好的价格表
+        List<Dish> dishes = new ArrayList<>(DISHES);
+        List<Setmeal> setmeals = new ArrayList<>(SETMEALS);
+        for (long id = 0; id < DISHES; id++) {
+            dishes.add(Dish.builder().id(id).price(new BigDecimal("10.00").add(BigDecimal.valueOf(id, 2)))
+                    .status(StatusConstant.ENABLE).build());
+        }
+        for (long id = 0; id < SETMEALS; id++) {
+            setmeals.add(Setmeal.builder().id(id).price(new BigDecimal("50.00").add(BigDecimal.valueOf(id, 2)))
+                    .status(StatusConstant.ENABLE).build());
+        }
+        CatalogSnapshot catalogSnapshot = CatalogSnapshotTest.loaded(dishes, setmeals);
+        PricingProperties pricingProperties = new PricingProperties();
+        pricingProperties.getFlavorSurcharges().put("加辣", new BigDecimal("1"));
+        pricingProperties.getFlavorSurcharges().put("加蛋", new BigDecimal("2"));
+
+        orderPricing = new OrderPricing();
+        ReflectionTestUtils.setField(orderPricing, "catalogSnapshot", catalogSnapshot);
+        ReflectionTestUtils.setField(orderPricing, "pricingProperties", pricingProperties);
+        orderPricing.init();
+
+        orderDetails = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            OrderDetail orderDetail = new OrderDetail();
+            if (i % 5 == 4) {
+                orderDetail.setSetmealId((long) i);
+            } else {
+                orderDetail.setDishId((long) (i % DISHES));
+                orderDetail.setDishFlavor(i % 2 == 0 ? "加辣,加蛋" : "少冰");
+            }
+            orderDetail.setNumber(1 + i % 3);
+            orderDetails.add(orderDetail);
+        }
+    }
+
+    @Benchmark
+    public Orders price() {
+        Orders orders = new Orders();
+        orderPricing.price(orders, orderDetails);
+        return orders;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(OrderPricingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,103 @@
+package com.sky.order;
+
+import com.sky.cache.CatalogSnapshot;
+import com.sky.constant.MessageConstant;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.exception.OrderBusinessException;
+import com.sky.properties.PricingProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OrderPricingTest {
+
+    private OrderPricing orderPricing;
+
+    @BeforeEach
+    void setUp() {
+        CatalogSnapshot catalogSnapshot = mock(CatalogSnapshot.class);
+        when(catalogSnapshot.getDishPrice(1L)).thenReturn(1800L);
+        when(catalogSnapshot.getDishPrice(2L)).thenReturn(500L);
+        when(catalogSnapshot.getDishPrice(3L)).thenReturn(-1L);
+        when(catalogSnapshot.getSetmealPrice(10L)).thenReturn(4800L);
+        when(catalogSnapshot.getSetmealPrice(11L)).thenReturn(-1L);
+
+        PricingProperties pricingProperties = new PricingProperties();
+        pricingProperties.setPackFee(1);
+        pricingProperties.setDeliveryFee(new BigDecimal("6"));
+        pricingProperties.getFlavorSurcharges().put("加辣", new BigDecimal("1"));
+        pricingProperties.getFlavorSurcharges().put("加蛋", new BigDecimal("2.5"));
+
+        orderPricing = new OrderPricing();
+        ReflectionTestUtils.setField(orderPricing, "catalogSnapshot", catalogSnapshot);
+        ReflectionTestUtils.setField(orderPricing, "pricingProperties", pricingProperties);
+        orderPricing.init();
+    }
+
+    /**
+     * 总金额 = 单价 * 份数 + 每份打包费 + 配送费
+     */
+    @Test
+    void pricesLinesWithPackAndDeliveryFee() {
+        OrderDetail dish = OrderDetail.builder().dishId(1L).number(2).amount(new BigDecimal("0.01")).build();
+        OrderDetail setmeal = OrderDetail.builder().setmealId(10L).number(1).build();
+        Orders orders = new Orders();
+
+        orderPricing.price(orders, Arrays.asList(dish, setmeal));
+
+        //客户端传入的金额被覆盖
+        assertEquals(new BigDecimal("18.00"), dish.getAmount());
+        assertEquals(new BigDecimal("48.00"), setmeal.getAmount());
+        assertEquals(3, orders.getPackAmount());
+        //18 * 2 + 48 + 3 + 6
+        assertEquals(new BigDecimal("93.00"), orders.getAmount());
+    }
+
+    /**
+     * 多个口味选项用逗号拼接，每个有加价的选项都累加，没有配置加价的选项不加价
+     */
+    @Test
+    void addsSurchargeForEachFlavorOption() {
+        OrderDetail detail = OrderDetail.builder().dishId(2L).dishFlavor("加辣, 加蛋,少冰").number(3).build();
+        Orders orders = new Orders();
+
+        orderPricing.price(orders, Collections.singletonList(detail));
+
+        //5 + 1 + 2.5
+        assertEquals(new BigDecimal("8.50"), detail.getAmount());
+        assertEquals(3, orders.getPackAmount());
+        //8.5 * 3 + 3 + 6
+        assertEquals(new BigDecimal("34.50"), orders.getAmount());
+    }
+
+    @Test
+    void unavailableDishIsRejected() {
+        List<OrderDetail> details = Arrays.asList(
+                OrderDetail.builder().dishId(1L).number(1).build(),
+                OrderDetail.builder().dishId(3L).name("已停售菜品").number(1).build());
+
+        OrderBusinessException e = assertThrows(OrderBusinessException.class,
+                () -> orderPricing.price(new Orders(), details));
+        assertEquals(MessageConstant.ORDER_ITEM_UNAVAILABLE, e.getMessage());
+    }
+
+    @Test
+    void unavailableSetmealIsRejected() {
+        List<OrderDetail> details = Collections.singletonList(OrderDetail.builder().setmealId(11L).number(1).build());
+
+        OrderBusinessException e = assertThrows(OrderBusinessException.class,
+                () -> orderPricing.price(new Orders(), details));
+        assertEquals(MessageConstant.ORDER_ITEM_UNAVAILABLE, e.getMessage());
+    }
+}
@@ -0,0 +1,78 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderStatusCounterTest {
+
+    @Mock
+    private OrderMapper orderMapper;
+    @InjectMocks
+    private OrderStatusCounter orderStatusCounter;
+
+    @Test
+    void reconcileCorrectsDrift() {
+        when(orderMapper.countGroupByStatus()).thenReturn(rows(3, 2));
+        orderStatusCounter.changed(null, Orders.TO_BE_CONFIRMED, 5);
+
+        orderStatusCounter.reconcile();
+
+        assertEquals(3, orderStatusCounter.get(Orders.TO_BE_CONFIRMED));
+        assertEquals(2, orderStatusCounter.get(Orders.CONFIRMED));
+    }
+
+    /**
+     * 事务中的状态变化在提交后才计数，回滚时不计数
+     */
+    @Test
+    void changesInTransactionApplyAfterCommit() {
+        when(orderMapper.countGroupByStatus()).thenReturn(rows(0, 0));
+        orderStatusCounter.reconcile();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            orderStatusCounter.changed(null, Orders.TO_BE_CONFIRMED, 1);
+            assertEquals(0, orderStatusCounter.get(Orders.TO_BE_CONFIRMED));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertEquals(1, orderStatusCounter.get(Orders.TO_BE_CONFIRMED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            orderStatusCounter.changed(null, Orders.TO_BE_CONFIRMED, 1);
+        } finally {
+            //回滚：不调用afterCommit
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(1, orderStatusCounter.get(Orders.TO_BE_CONFIRMED));
+    }
+
+    private static List<Map<String, Object>> rows(long toBeConfirmed, long confirmed) {
+        return Arrays.asList(row(Orders.TO_BE_CONFIRMED, toBeConfirmed), row(Orders.CONFIRMED, confirmed));
+    }
+
+    private static Map<String, Object> row(int status, long number) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("status", status);
+        row.put("number", number);
+        return row;
+    }
+}
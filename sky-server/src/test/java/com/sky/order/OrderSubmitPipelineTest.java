@@ -0,0 +1,117 @@
+package com.sky.order;
+
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderSubmitProperties;
+import com.sky.service.ReportService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderSubmitPipelineTest {
+
+    @Mock
+    private OrderMapper orderMapper;
+    @Mock
+    private OrderDetailMapper orderDetailMapper;
+    @Mock
+    private ReportService reportService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Spy
+    private OrderSubmitProperties orderSubmitProperties = new OrderSubmitProperties();
+    @InjectMocks
+    private OrderSubmitPipeline orderSubmitPipeline;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        ReflectionTestUtils.setField(orderSubmitPipeline, "transactionTemplate", new TransactionTemplate(transactionManager));
+        orderSubmitPipeline.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        orderSubmitPipeline.stop();
+    }
+
+    /**
+     * 每日订单数在订单事务提交后按日期汇总写入，不在写入事务中执行
+     */
+    @Test
+    void orderCountsAreAddedAfterCommit() throws InterruptedException {
+        LocalDate today = LocalDate.now();
+        LocalDate yesterday = today.minusDays(1);
+        orderSubmitPipeline.submit(order(yesterday), new ArrayList<>());
+        orderSubmitPipeline.submit(order(today), new ArrayList<>());
+        orderSubmitPipeline.submit(order(today), new ArrayList<>());
+        orderSubmitPipeline.stop();
+
+        InOrder inOrder = inOrder(orderMapper, transactionManager, reportService);
+        inOrder.verify(orderMapper).insertBatch(any());
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(reportService, atLeastOnce()).ordersSubmitted(any(), anyInt());
+
+        ArgumentCaptor<LocalDate> dates = ArgumentCaptor.forClass(LocalDate.class);
+        ArgumentCaptor<Integer> counts = ArgumentCaptor.forClass(Integer.class);
+        verify(reportService, atLeastOnce()).ordersSubmitted(dates.capture(), counts.capture());
+        Map<LocalDate, Integer> totals = new HashMap<>();
+        for (int i = 0; i < dates.getAllValues().size(); i++) {
+            totals.merge(dates.getAllValues().get(i), counts.getAllValues().get(i), Integer::sum);
+        }
+        Map<LocalDate, Integer> expected = new HashMap<>();
+        expected.put(yesterday, 1);
+        expected.put(today, 2);
+        assertEquals(expected, totals);
+    }
+
+    /**
+     * 累加失败的订单数保留在内存中，下次再写入
+     */
+    @Test
+    void failedOrderCountsAreRetried() throws InterruptedException {
+        LocalDate today = LocalDate.now();
+        doThrow(new IllegalStateException("db down")).when(reportService).ordersSubmitted(today, 1);
+        List<OrderDetail> orderDetails = Collections.emptyList();
+        orderSubmitPipeline.submit(order(today), orderDetails);
+        Thread.sleep(300);
+        orderSubmitPipeline.submit(order(today), orderDetails);
+        orderSubmitPipeline.stop();
+
+        verify(reportService).ordersSubmitted(today, 2);
+    }
+
+    private static Orders order(LocalDate date) {
+        return Orders.builder().orderTime(date.atTime(12, 0)).build();
+    }
+}
@@ -0,0 +1,148 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.vo.DishVO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.BeanUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 菜品口味加载的基准测试：逐个菜品查询口味(原实现) 与 一次in查询批量加载 对比
+ * 没有真实数据库，mapper由动态代理模拟，每次查询固定等待一个数据库往返时间；每轮结束时输出每次操作的平均查询次数
+ * 运行main方法，或 mvn test-compile 后用测试classpath运行 org.openjdk.jmh.Main DishFlavorLoadBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DishFlavorLoadBenchmark {
+
+    //每个菜品的口味数
+    private static final int FLAVORS_PER_DISH = 2;
+
+    @Param({"10", "40", "100"})
+    public int categorySize;
+
+    //模拟的数据库往返时间(微秒)
+    @Param({"200"})
+    public long roundTripMicros;
+
+    private DishMapper dishMapper;
+    private DishFlavorMapper dishFlavorMapper;
+    private DishServiceImpl dishService;
+
+    private List<Dish> dishes;
+
+    //本轮的查询次数和操作次数，单线程运行
+    private long queries;
+    private long operations;
+
+    @Setup
+    public void setUp() {
+        dishes = new ArrayList<>(categorySize);
+        for (long id = 1; id <= categorySize; id++) {
+            dishes.add(Dish.builder().id(id).name("菜品" + id).categoryId(1L).build());
+        }
+        dishMapper = (DishMapper) Proxy.newProxyInstance(DishMapper.class.getClassLoader(),
+                new Class[]{DishMapper.class}, (proxy, method, args) -> {
+                    roundTrip();
+                    return dishes;
+                });
+        dishFlavorMapper = (DishFlavorMapper) Proxy.newProxyInstance(DishFlavorMapper.class.getClassLoader(),
+                new Class[]{DishFlavorMapper.class}, (proxy, method, args) -> {
+                    roundTrip();
+                    List<DishFlavor> flavors = new ArrayList<>();
+                    if ("getByDishId".equals(method.getName())) {
+                        addFlavors(flavors, (Long) args[0]);
+                    } else {
+                        for (Object dishId : (List<?>) args[0]) {
+                            addFlavors(flavors, (Long) dishId);
+                        }
+                    }
+                    return flavors;
+                });
+        dishService = new DishServiceImpl();
+        ReflectionTestUtils.setField(dishService, "dishMapper", dishMapper);
+        ReflectionTestUtils.setField(dishService, "dishFlavorMapper", dishFlavorMapper);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetCounter() {
+        queries = 0;
+        operations = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void printCounter() {
+        if (operations > 0) {
+            System.out.printf("%n菜品数：%d，每次操作查询次数：%.1f%n", categorySize, (double) queries / operations);
+        }
+    }
+
+    private void roundTrip() {
+        queries++;
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+    }
+
+    private static void addFlavors(List<DishFlavor> flavors, Long dishId) {
+        for (int i = 0; i < FLAVORS_PER_DISH; i++) {
+            flavors.add(DishFlavor.builder().dishId(dishId).name("口味" + i).value("[\"a\",\"b\"]").build());
+        }
+    }
+
+    /**
+     * 原实现：每个菜品查询一次口味
+     */
+    @Benchmark
+    public List<DishVO> perDishQueries() {
+        operations++;
+        List<Dish> dishList = dishMapper.getByCategoryId(new Dish());
+        List<DishVO> dishVOList = new ArrayList<>(dishList.size());
+        for (Dish d : dishList) {
+            DishVO dishVO = new DishVO();
+            BeanUtils.copyProperties(d, dishVO);
+            dishVO.setFlavors(dishFlavorMapper.getByDishId(d.getId()));
+            dishVOList.add(dishVO);
+        }
+        return dishVOList;
+    }
+
+    /**
+     * 当前实现：一次in查询加载分类下所有菜品的口味
+     */
+    @Benchmark
+    public List<DishVO> batchQuery() {
+        operations++;
+        return dishService.listWithFlavor(new Dish());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DishFlavorLoadBenchmark.class.getSimpleName()).build()).run();
+    }
+}
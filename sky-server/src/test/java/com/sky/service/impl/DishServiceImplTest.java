@@ -0,0 +1,115 @@
+package com.sky.service.impl;
+
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealDishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DishServiceImplTest {
+
+    @Mock
+    private DishMapper dishMapper;
+    @Mock
+    private DishFlavorMapper dishFlavorMapper;
+    @Mock
+    private SetmealDishMapper setmealDishMapper;
+    @Mock
+    private SetmealMapper setmealMapper;
+    @InjectMocks
+    private DishServiceImpl dishService;
+
+    /**
+     * 不论分类下有多少菜品，口味都只查询一次，并按菜品正确分组
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {1, 40, 200})
+    void listWithFlavorLoadsFlavorsWithOneQuery(int categorySize) {
+        List<Dish> dishes = new ArrayList<>();
+        List<DishFlavor> flavors = new ArrayList<>();
+        for (long id = 1; id <= categorySize; id++) {
+            dishes.add(Dish.builder().id(id).name("菜品" + id).build());
+            //偶数菜品有两个口味，奇数菜品没有口味
+            if (id % 2 == 0) {
+                flavors.add(DishFlavor.builder().dishId(id).name("辣度").build());
+                flavors.add(DishFlavor.builder().dishId(id).name("温度").build());
+            }
+        }
+        when(dishMapper.getByCategoryId(any())).thenReturn(dishes);
+        when(dishFlavorMapper.getByDishIds(anyList())).thenReturn(flavors);
+
+        List<DishVO> list = dishService.listWithFlavor(new Dish());
+
+        assertEquals(categorySize, list.size());
+        for (DishVO dishVO : list) {
+            assertEquals(dishVO.getId() % 2 == 0 ? 2 : 0, dishVO.getFlavors().size());
+            dishVO.getFlavors().forEach(flavor -> assertEquals(dishVO.getId(), flavor.getDishId()));
+        }
+        verify(dishFlavorMapper, times(1)).getByDishIds(anyList());
+        verify(dishFlavorMapper, never()).getByDishId(anyLong());
+    }
+
+    @Test
+    void listWithFlavorSkipsFlavorQueryForEmptyCategory() {
+        when(dishMapper.getByCategoryId(any())).thenReturn(Collections.emptyList());
+
+        assertTrue(dishService.listWithFlavor(new Dish()).isEmpty());
+        verify(dishFlavorMapper, never()).getByDishIds(anyList());
+    }
+
+    @Test
+    void getByIdUsesBatchLoader() {
+        when(dishMapper.getById(5L)).thenReturn(Dish.builder().id(5L).build());
+        when(dishFlavorMapper.getByDishIds(Collections.singletonList(5L))).thenReturn(Arrays.asList(
+                DishFlavor.builder().dishId(5L).name("辣度").build()));
+
+        DishVO dishVO = dishService.getById(5L);
+
+        assertEquals(1, dishVO.getFlavors().size());
+        verify(dishFlavorMapper, never()).getByDishId(anyLong());
+    }
+
+    /**
+     * 停售菜品时返回一起停售的套餐所属的分类，用于清理套餐缓存
+     */
+    @Test
+    void disableReturnsCategoriesOfDisabledSetmeals() {
+        when(setmealDishMapper.getSetmealIdsByDishIds(Collections.singletonList(5L))).thenReturn(Arrays.asList(11L, 12L));
+        when(setmealMapper.getCategoryIdsByIds(Arrays.asList(11L, 12L))).thenReturn(Arrays.asList(13L, 15L));
+
+        assertEquals(Arrays.asList(13L, 15L), dishService.status(StatusConstant.DISABLE, 5L));
+        verify(setmealMapper, times(2)).update(any());
+    }
+
+    @Test
+    void enableDoesNotTouchSetmeals() {
+        assertTrue(dishService.status(StatusConstant.ENABLE, 5L).isEmpty());
+        verify(setmealDishMapper, never()).getSetmealIdsByDishIds(anyList());
+    }
+}
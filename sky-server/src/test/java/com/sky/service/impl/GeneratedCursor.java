@@ -0,0 +1,74 @@
+package com.sky.service.impl;
+
+import com.sky.dto.OrderExportDTO;
+import org.apache.ibatis.cursor.Cursor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 按需生成订单明细的游标，模拟数据库游标逐行读取，不在内存中保存全部数据
+ */
+class GeneratedCursor implements Cursor<OrderExportDTO> {
+
+    static final LocalDateTime ORDER_TIME = LocalDateTime.of(2024, 5, 1, 12, 0, 0);
+
+    private final int rows;
+
+    private int index = -1;
+
+    private boolean open = true;
+
+    GeneratedCursor(int rows) {
+        this.rows = rows;
+    }
+
+    static OrderExportDTO row(int i) {
+        return OrderExportDTO.builder()
+                .number(String.valueOf(1000000000000L + i))
+                .orderTime(ORDER_TIME.plusSeconds(i))
+                .status(5)
+                .consignee("收货人" + i % 100)
+                .phone("13800000000")
+                .address("北京市昌平区金燕龙办公楼" + i % 50 + "号")
+                .orderAmount(new BigDecimal("88.00"))
+                .name("菜品" + i % 200)
+                .dishFlavor(i % 2 == 0 ? "微辣" : null)
+                .quantity(1 + i % 3)
+                .amount(new BigDecimal("38.00"))
+                .build();
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public boolean isConsumed() {
+        return index >= rows - 1;
+    }
+
+    public int getCurrentIndex() {
+        return index;
+    }
+
+    public void close() {
+        open = false;
+    }
+
+    public Iterator<OrderExportDTO> iterator() {
+        return new Iterator<OrderExportDTO>() {
+            public boolean hasNext() {
+                return open && index < rows - 1;
+            }
+
+            public OrderExportDTO next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return row(++index);
+            }
+        };
+    }
+}
@@ -0,0 +1,126 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.dto.OrdersCancelDTO;
+import com.sky.dto.OrdersConfirmDTO;
+import com.sky.dto.OrdersRejectionDTO;
+import com.sky.entity.Orders;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.OrderMapper;
+import com.sky.order.OrderStatusCounter;
+import com.sky.order.OrderTimeoutQueue;
+import com.sky.service.WorkspaceService;
+import com.sky.websocket.OrderPushServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.function.Executable;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderServiceImplTest {
+
+    @Mock
+    private OrderMapper orderMapper;
+    @Mock
+    private WorkspaceService workspaceService;
+    @Mock
+    private OrderStatusCounter orderStatusCounter;
+    @Mock
+    private OrderTimeoutQueue orderTimeoutQueue;
+    @Mock
+    private OrderPushServer orderPushServer;
+    @InjectMocks
+    private OrderServiceImpl orderService;
+
+    /**
+     * 订单不存在时所有状态修改都抛出业务异常，不修改订单也不修改计数
+     */
+    @Test
+    void transitionsOnMissingOrderThrowOrderNotFound() {
+        when(orderMapper.getById(anyLong())).thenReturn(null);
+
+        OrdersConfirmDTO confirm = new OrdersConfirmDTO();
+        confirm.setId(1L);
+        OrdersRejectionDTO rejection = new OrdersRejectionDTO();
+        rejection.setId(1L);
+        OrdersCancelDTO cancel = new OrdersCancelDTO();
+        cancel.setId(1L);
+
+        assertNotFound(() -> orderService.confirm(confirm));
+        assertNotFound(() -> orderService.rejection(rejection));
+        assertNotFound(() -> orderService.cancel(cancel));
+        assertNotFound(() -> orderService.delivery(1L));
+        assertNotFound(() -> orderService.complete(1L));
+        assertNotFound(() -> orderService.details(1L));
+
+        verify(orderMapper, never()).update(any());
+        verifyNoInteractions(workspaceService, orderStatusCounter);
+    }
+
+    @Test
+    void confirmRequiresOrderToBeConfirmed() {
+        when(orderMapper.getById(1L)).thenReturn(Orders.builder().id(1L).status(Orders.CONFIRMED).build());
+        OrdersConfirmDTO confirm = new OrdersConfirmDTO();
+        confirm.setId(1L);
+
+        OrderBusinessException e = assertThrows(OrderBusinessException.class, () -> orderService.confirm(confirm));
+        assertEquals(MessageConstant.ORDER_STATUS_ERROR, e.getMessage());
+        verify(orderMapper, never()).update(any());
+    }
+
+    @Test
+    void confirmMovesOrderCounts() {
+        Orders ordersDB = Orders.builder().id(1L).status(Orders.TO_BE_CONFIRMED).build();
+        when(orderMapper.getById(1L)).thenReturn(ordersDB);
+        OrdersConfirmDTO confirm = new OrdersConfirmDTO();
+        confirm.setId(1L);
+
+        orderService.confirm(confirm);
+
+        verify(workspaceService).orderStatusChanged(ordersDB, Orders.CONFIRMED);
+        verify(orderStatusCounter).changed(Orders.TO_BE_CONFIRMED, Orders.CONFIRMED, 1);
+    }
+
+    /**
+     * 支付成功在事务中处理，提交后才移出超时队列、修改工作台数据和推送来单提醒
+     */
+    @Test
+    void paySuccessPushesAfterCommit() {
+        Orders ordersDB = Orders.builder().id(1L).number("n1").status(Orders.PENDING_PAYMENT).build();
+        when(orderMapper.getByNumber("n1")).thenReturn(ordersDB);
+        when(orderMapper.paySuccess(eq(1L), any())).thenReturn(1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            orderService.paySuccess("n1");
+
+            verifyNoInteractions(orderTimeoutQueue, workspaceService, orderPushServer);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(orderTimeoutQueue).remove(1L);
+        verify(workspaceService).orderStatusChanged(ordersDB, Orders.TO_BE_CONFIRMED);
+        verify(orderPushServer).push(OrderPushServer.ORDER_PAID, 1L, "n1");
+    }
+
+    private static void assertNotFound(Executable executable) {
+        OrderBusinessException e = assertThrows(OrderBusinessException.class, executable);
+        assertEquals(MessageConstant.ORDER_NOT_FOUND, e.getMessage());
+    }
+}
@@ -0,0 +1,104 @@
+package com.sky.service.impl;
+
+import com.sky.mapper.ReportMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 运营数据导出的基准测试：游标逐行生成订单明细，写入丢弃数据的输出流，测量导出耗时和堆内存峰值
+ * 测试进程的最大堆限制为128m，导出100万行能够完成说明内存占用与行数无关
+ * 运行main方法，或 mvn test-compile 后用测试classpath运行 org.openjdk.jmh.Main ReportExportBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx128m")
+public class ReportExportBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    private ReportServiceImpl reportService;
+
+    private long bytesWritten;
+
+    @Setup
+    public void setUp() {
+        ReportMapper reportMapper = (ReportMapper) Proxy.newProxyInstance(ReportMapper.class.getClassLoader(),
+                new Class[]{ReportMapper.class}, (proxy, method, args) -> {
+                    if ("cursorOrderDetails".equals(method.getName())) {
+                        return new GeneratedCursor(rows);
+                    }
+                    return Collections.emptyList();
+                });
+        reportService = new ReportServiceImpl();
+        ReflectionTestUtils.setField(reportService, "reportMapper", reportMapper);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeak() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        bytesWritten = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void printPeak() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.printf("%n行数：%d，文件大小：%dKB，堆内存峰值：%dMB%n", rows, bytesWritten / 1024, peak / 1024 / 1024);
+    }
+
+    @Benchmark
+    public long export() throws IOException {
+        OutputStream out = new OutputStream() {
+            public void write(int b) {
+                bytesWritten++;
+            }
+
+            public void write(byte[] b, int off, int len) {
+                bytesWritten += len;
+            }
+        };
+        LocalDate day = LocalDate.of(2024, 5, 1);
+        reportService.exportBusinessData(day, day.plusDays(29), out);
+        return bytesWritten;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ReportExportBenchmark.class.getSimpleName()).build()).run();
+    }
+}
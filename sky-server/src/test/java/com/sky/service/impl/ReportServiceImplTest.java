@@ -0,0 +1,160 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.entity.DailyReport;
+import com.sky.exception.ReportBusinessException;
+import com.sky.mapper.ReportMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.vo.UserReportVO;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReportServiceImplTest {
+
+    @Mock
+    private ReportMapper reportMapper;
+    @Mock
+    private UserMapper userMapper;
+    @InjectMocks
+    private ReportServiceImpl reportService;
+
+    /**
+     * 导出的运营数据按天一行，订单明细逐行写入，导出后关闭游标
+     */
+    @Test
+    void exportWritesDailyRowsAndOrderDetails() throws Exception {
+        LocalDate begin = LocalDate.of(2024, 5, 1);
+        LocalDate end = LocalDate.of(2024, 5, 3);
+        when(reportMapper.listByDate(begin, end)).thenReturn(Collections.singletonList(DailyReport.builder()
+                .reportDate(LocalDate.of(2024, 5, 2)).turnover(new BigDecimal("100.00"))
+                .orderCount(5).validOrderCount(4).newUsers(2).build()));
+        GeneratedCursor cursor = new GeneratedCursor(250);
+        when(reportMapper.cursorOrderDetails(any(), any())).thenReturn(cursor);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reportService.exportBusinessData(begin, end, out);
+
+        assertFalse(cursor.isOpen());
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            Sheet business = workbook.getSheet("运营数据");
+            //概览：营业额、完成率、新增用户、有效订单、客单价
+            Row overview = business.getRow(2);
+            assertEquals(100.0, overview.getCell(0).getNumericCellValue());
+            assertEquals(0.8, overview.getCell(1).getNumericCellValue(), 1e-9);
+            assertEquals(25.0, overview.getCell(4).getNumericCellValue());
+            //表头之后每天一行，没有数据的日期填0
+            assertEquals("2024-05-01", business.getRow(5).getCell(0).getStringCellValue());
+            assertEquals(0.0, business.getRow(5).getCell(1).getNumericCellValue());
+            assertEquals(100.0, business.getRow(6).getCell(1).getNumericCellValue());
+            assertEquals(7, business.getLastRowNum());
+
+            Sheet details = workbook.getSheet("订单明细");
+            //表头 + 250行，超过内存窗口(100行)的行已写入临时文件
+            assertEquals(250, details.getLastRowNum());
+            assertEquals(GeneratedCursor.row(249).getNumber(), details.getRow(250).getCell(0).getStringCellValue());
+            assertEquals("已完成", details.getRow(1).getCell(2).getStringCellValue());
+        }
+    }
+
+    @Test
+    void exportWithoutOrdersStillHasDetailSheet() throws Exception {
+        LocalDate day = LocalDate.of(2024, 5, 1);
+        when(reportMapper.listByDate(day, day)).thenReturn(Collections.emptyList());
+        when(reportMapper.cursorOrderDetails(any(), any())).thenReturn(new GeneratedCursor(0));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reportService.exportBusinessData(day, day, out);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals(0, workbook.getSheet("订单明细").getLastRowNum());
+        }
+    }
+
+    @Test
+    void rebuildRejectsInvalidRange() {
+        LocalDate day = LocalDate.of(2024, 5, 1);
+
+        assertRebuildRejected(null, day, MessageConstant.REPORT_DATE_RANGE_ERROR);
+        assertRebuildRejected(day, null, MessageConstant.REPORT_DATE_RANGE_ERROR);
+        assertRebuildRejected(day.plusDays(1), day, MessageConstant.REPORT_DATE_RANGE_ERROR);
+        assertRebuildRejected(day, day.plusDays(31), MessageConstant.REPORT_REBUILD_RANGE_TOO_LARGE);
+        verifyNoInteractions(reportMapper);
+    }
+
+    /**
+     * 31天的范围可以重算，每天一个事务
+     */
+    @Test
+    void rebuildRunsOneTransactionPerDay() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        ReflectionTestUtils.setField(reportService, "transactionTemplate", new TransactionTemplate(transactionManager));
+        LocalDate begin = LocalDate.of(2024, 5, 1);
+
+        reportService.rebuild(begin, begin.plusDays(30));
+
+        verify(transactionManager, times(31)).commit(any());
+        verify(reportMapper, times(31)).rebuildReport(any(), any(), any());
+        verify(reportMapper).rebuildSales(eq(begin.plusDays(30)), any(), any());
+    }
+
+    /**
+     * 累计用户数从用户表统计开始日期之前的用户，再逐天累加汇总表中的新增用户
+     */
+    @Test
+    void userStatisticsStartsFromUserTableCount() {
+        LocalDate begin = LocalDate.of(2024, 5, 1);
+        when(userMapper.countByCreateTimeBefore(begin.atStartOfDay())).thenReturn(1000);
+        when(reportMapper.listByDate(begin, begin.plusDays(1))).thenReturn(Collections.singletonList(
+                DailyReport.builder().reportDate(begin.plusDays(1)).newUsers(3).build()));
+
+        UserReportVO userReportVO = reportService.getUserStatistics(begin, begin.plusDays(1));
+
+        assertEquals("1000,1003", userReportVO.getTotalUserList());
+        assertEquals("0,3", userReportVO.getNewUserList());
+    }
+
+    @Test
+    void statisticsRejectInvalidRange() {
+        LocalDate day = LocalDate.of(2024, 5, 1);
+
+        assertThrows(ReportBusinessException.class, () -> reportService.getTurnoverStatistics(null, day));
+        assertThrows(ReportBusinessException.class, () -> reportService.getUserStatistics(day, null));
+        assertThrows(ReportBusinessException.class, () -> reportService.getOrderStatistics(day.plusDays(1), day));
+        assertThrows(ReportBusinessException.class, () -> reportService.getSalesTop10(day.plusDays(1), day));
+        verifyNoInteractions(reportMapper, userMapper);
+    }
+
+    private void assertRebuildRejected(LocalDate begin, LocalDate end, String message) {
+        ReportBusinessException e = assertThrows(ReportBusinessException.class, () -> reportService.rebuild(begin, end));
+        assertEquals(message, e.getMessage());
+    }
+}
@@ -0,0 +1,96 @@
+package com.sky.service.impl;
+
+import com.sky.cache.CatalogSnapshot;
+import com.sky.cart.CartStore;
+import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
+import com.sky.context.BaseContext;
+import com.sky.dto.ShoppingCartDTO;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.ShoppingCartBusinessException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ShoppingcartServiceImplTest {
+
+    @Mock
+    private CartStore cartStore;
+    @Mock
+    private CatalogSnapshot catalogSnapshot;
+    @InjectMocks
+    private ShoppingcartServiceImpl shoppingcartService;
+
+    @BeforeEach
+    void setUp() {
+        BaseContext.setCurrentId(9L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    @Test
+    void addEnabledDishUsesSnapshotInfo() {
+        when(catalogSnapshot.getDish(1L)).thenReturn(Dish.builder().id(1L).name("宫保鸡丁")
+                .price(new BigDecimal("28.00")).status(StatusConstant.ENABLE).build());
+        when(cartStore.increment(eq(9L), any(), eq(1))).thenReturn(false);
+
+        shoppingcartService.add(dish(1L));
+
+        ArgumentCaptor<ShoppingCart> captor = ArgumentCaptor.forClass(ShoppingCart.class);
+        verify(cartStore).add(eq(9L), captor.capture());
+        assertEquals("宫保鸡丁", captor.getValue().getName());
+        assertEquals(new BigDecimal("28.00"), captor.getValue().getAmount());
+        assertEquals(1, captor.getValue().getNumber());
+    }
+
+    /**
+     * 不存在或已停售的菜品、套餐不能加入购物车，已在购物车中的也不能再增加数量
+     */
+    @Test
+    void unavailableItemsAreRejected() {
+        when(catalogSnapshot.getDish(1L)).thenReturn(null);
+        when(catalogSnapshot.getDish(2L)).thenReturn(Dish.builder().id(2L).status(StatusConstant.DISABLE).build());
+        when(catalogSnapshot.getSetmeal(3L)).thenReturn(Setmeal.builder().id(3L).status(StatusConstant.DISABLE).build());
+        ShoppingCartDTO setmeal = new ShoppingCartDTO();
+        setmeal.setSetmealId(3L);
+
+        assertUnavailable(dish(1L));
+        assertUnavailable(dish(2L));
+        assertUnavailable(setmeal);
+        assertUnavailable(new ShoppingCartDTO());
+        verifyNoInteractions(cartStore);
+    }
+
+    private static ShoppingCartDTO dish(Long dishId) {
+        ShoppingCartDTO shoppingCartDTO = new ShoppingCartDTO();
+        shoppingCartDTO.setDishId(dishId);
+        return shoppingCartDTO;
+    }
+
+    private void assertUnavailable(ShoppingCartDTO shoppingCartDTO) {
+        ShoppingCartBusinessException e = assertThrows(ShoppingCartBusinessException.class,
+                () -> shoppingcartService.add(shoppingCartDTO));
+        assertEquals(MessageConstant.CART_ITEM_UNAVAILABLE, e.getMessage());
+    }
+}
@@ -0,0 +1,85 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WorkspaceServiceImplTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+    @Mock
+    private OrderMapper orderMapper;
+    @Mock
+    private UserMapper userMapper;
+    @InjectMocks
+    private WorkspaceServiceImpl workspaceService;
+
+    /**
+     * 今天已经接了一单：查询数据库之前先把本节点的增量交给刷新脚本(计数器未初始化，脚本丢弃)，再初始化，不会重复计数
+     */
+    @Test
+    void pendingDeltasAreHandledBeforeSeeding() {
+        workspaceService.orderStatusChanged(Orders.builder().status(Orders.TO_BE_CONFIRMED)
+                .orderTime(LocalDateTime.now()).amount(BigDecimal.TEN).build(), Orders.CONFIRMED);
+        when(stringRedisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.entries(any())).thenReturn(Collections.emptyMap(),
+                Collections.singletonMap("delivered", "1"));
+        when(orderMapper.countByStatusAndTime(any(), any())).thenReturn(Collections.emptyList());
+        when(userMapper.countByCreateTime(any(), any())).thenReturn(0);
+
+        assertEquals(1, workspaceService.getOrderOverView().getDeliveredOrders());
+
+        RedisScript<?> flushScript = (RedisScript<?>) ReflectionTestUtils.getField(WorkspaceServiceImpl.class, "FLUSH_SCRIPT");
+        RedisScript<?> seedScript = (RedisScript<?>) ReflectionTestUtils.getField(WorkspaceServiceImpl.class, "SEED_SCRIPT");
+        InOrder inOrder = inOrder(stringRedisTemplate, orderMapper);
+        inOrder.verify(stringRedisTemplate).execute(eq(flushScript), anyList(), (Object[]) any());
+        inOrder.verify(orderMapper).countByStatusAndTime(any(), any());
+        inOrder.verify(stringRedisTemplate).execute(eq(seedScript), anyList(), (Object[]) any());
+    }
+
+    /**
+     * 增量刷新失败时不初始化，增量留在本地，查询结果仍然包含这些增量
+     */
+    @Test
+    void seedIsSkippedWhenFlushFails() {
+        workspaceService.orderStatusChanged(Orders.builder().status(Orders.TO_BE_CONFIRMED)
+                .orderTime(LocalDateTime.now()).amount(BigDecimal.TEN).build(), Orders.CONFIRMED);
+        when(stringRedisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+        Map<Object, Object> empty = Collections.emptyMap();
+        when(hashOperations.entries(any())).thenReturn(empty);
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), (Object[]) any()))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        assertEquals(1, workspaceService.getOrderOverView().getDeliveredOrders());
+        verify(orderMapper, never()).countByStatusAndTime(any(), any());
+    }
+}
@@ -0,0 +1,105 @@
+package com.sky.task;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.order.OrderStatusCounter;
+import com.sky.service.ReportService;
+import com.sky.service.WorkspaceService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderTaskTest {
+
+    @Mock
+    private OrderMapper orderMapper;
+    @Mock
+    private ReportService reportService;
+    @Mock
+    private WorkspaceService workspaceService;
+    @Mock
+    private OrderStatusCounter orderStatusCounter;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @InjectMocks
+    private OrderTask orderTask;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        orderTask.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void completedBatchIsRolledUpOnce() {
+        List<Long> ids = Arrays.asList(1L, 2L, 3L);
+        when(orderMapper.selectIdsByStatusAndTime(eq(Orders.DELIVERY_IN_PROGRESS), any(), anyLong(), anyInt())).thenReturn(ids);
+        when(orderMapper.completeByIds(eq(ids), any())).thenReturn(3);
+
+        orderTask.processDeliveryOrder();
+
+        verify(reportService).ordersCompleted(ids);
+        verify(orderStatusCounter).changed(Orders.DELIVERY_IN_PROGRESS, Orders.COMPLETED, 3);
+    }
+
+    /**
+     * 查询之后订单2已被商家处理，只累加实际完成的订单1和3
+     */
+    @Test
+    void onlyTransitionedOrdersAreRolledUp() {
+        List<Long> ids = Arrays.asList(1L, 2L, 3L);
+        when(orderMapper.selectIdsByStatusAndTime(eq(Orders.DELIVERY_IN_PROGRESS), any(), anyLong(), anyInt())).thenReturn(ids);
+        when(orderMapper.completeByIds(eq(ids), any())).thenReturn(2);
+        when(orderMapper.completeByIds(eq(Collections.singletonList(1L)), any())).thenReturn(1);
+        when(orderMapper.completeByIds(eq(Collections.singletonList(2L)), any())).thenReturn(0);
+        when(orderMapper.completeByIds(eq(Collections.singletonList(3L)), any())).thenReturn(1);
+
+        orderTask.processDeliveryOrder();
+
+        verify(reportService, times(1)).ordersCompleted(any());
+        verify(reportService).ordersCompleted(Arrays.asList(1L, 3L));
+        verify(orderStatusCounter).changed(Orders.DELIVERY_IN_PROGRESS, Orders.COMPLETED, 2);
+    }
+
+    /**
+     * 漏掉的超时订单跨越了午夜，按各自的下单日期计入工作台数据
+     */
+    @Test
+    void timedOutOrdersAreCancelledByOrderDate() {
+        LocalDate today = LocalDate.now();
+        List<Orders> ordersList = Arrays.asList(
+                Orders.builder().id(1L).orderTime(today.minusDays(1).atTime(23, 50)).build(),
+                Orders.builder().id(2L).orderTime(today.atStartOfDay().plusMinutes(5)).build(),
+                Orders.builder().id(3L).orderTime(today.minusDays(1).atTime(23, 58)).build());
+        when(orderMapper.selectOrderTimesByStatusAndTime(eq(Orders.PENDING_PAYMENT), any(), eq(0L), anyInt())).thenReturn(ordersList);
+        when(orderMapper.cancelByIds(eq(Arrays.asList(1L, 3L)), eq(Orders.PENDING_PAYMENT), any(), any())).thenReturn(2);
+        when(orderMapper.cancelByIds(eq(Collections.singletonList(2L)), eq(Orders.PENDING_PAYMENT), any(), any())).thenReturn(0);
+
+        orderTask.processTimeOutOrder();
+
+        verify(workspaceService).ordersCancelled(today.minusDays(1), Orders.PENDING_PAYMENT, 2);
+        verify(workspaceService).ordersCancelled(today, Orders.PENDING_PAYMENT, 0);
+        verify(orderStatusCounter).changed(Orders.PENDING_PAYMENT, Orders.CANCELLED, 2);
+    }
+}